@@ -38,6 +38,9 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     
+    // RecyclerView 1.2+ for getBindingAdapterPosition; material only brings in an older one
+    implementation("androidx.recyclerview:recyclerview:1.3.2")
+    
     // Room components
     implementation("androidx.room:room-runtime:2.6.1")
     annotationProcessor("androidx.room:room-compiler:2.6.1")
@@ -0,0 +1,111 @@
+package com.example.test;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times CaseInsensitiveMatcher against toLowerCase().contains() over 10,000 notes of
+ * about 5 KB each, the way the search refinement filters notes in memory, and reports
+ * both. CaseInsensitiveMatcherTest covers correctness.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CaseInsensitiveMatcherBenchmarkTest {
+    private static final String TAG = "CaseInsensitiveMatcherBenchmark";
+
+    private static final int NOTE_COUNT = 10_000;
+    private static final int NOTE_LENGTH = 5 * 1024;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final String[] WORDS = {
+            "meeting", "Project", "budget", "TODO", "review", "notes", "Android", "release",
+            "call", "Tom", "groceries", "idea", "draft", "deadline", "Room", "search"
+    };
+
+    private static List<String> createNotes() {
+        Random random = new Random(42);
+        List<String> notes = new ArrayList<>(NOTE_COUNT);
+        StringBuilder builder = new StringBuilder(NOTE_LENGTH + 16);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            builder.setLength(0);
+            while (builder.length() < NOTE_LENGTH) {
+                builder.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            // A rare word so that only a few notes match
+            if (i % 500 == 0) {
+                builder.append("Quarterly-Report");
+            }
+            notes.add(builder.toString());
+        }
+        return notes;
+    }
+
+    private static int countWithLowerCase(List<String> notes, String pattern) {
+        String filterPattern = pattern.toLowerCase(Locale.ROOT);
+        int matches = 0;
+        for (String note : notes) {
+            if (note.toLowerCase(Locale.ROOT).contains(filterPattern)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static int countWithMatcher(List<String> notes, String pattern) {
+        CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher(pattern);
+        int matches = 0;
+        for (String note : notes) {
+            if (matcher.containedIn(note)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Test
+    public void benchmarkAgainstToLowerCase() {
+        List<String> notes = createNotes();
+        String[] patterns = {"quarterly-report", "DEADLINE", "not-present"};
+
+        for (String pattern : patterns) {
+            assertEquals(countWithLowerCase(notes, pattern), countWithMatcher(notes, pattern));
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (String pattern : patterns) {
+                countWithLowerCase(notes, pattern);
+                countWithMatcher(notes, pattern);
+            }
+        }
+
+        long lowerCaseNanos = 0;
+        long matcherNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            for (String pattern : patterns) {
+                long start = System.nanoTime();
+                countWithLowerCase(notes, pattern);
+                lowerCaseNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                countWithMatcher(notes, pattern);
+                matcherNanos += System.nanoTime() - start;
+            }
+        }
+
+        int passes = MEASURED_ROUNDS * patterns.length;
+        Log.i(TAG, String.format(Locale.ROOT,
+                "Filter pass over %d notes of %d chars: toLowerCase().contains() %.1f ms, CaseInsensitiveMatcher %.1f ms",
+                NOTE_COUNT, NOTE_LENGTH, lowerCaseNanos / 1e6 / passes, matcherNanos / 1e6 / passes));
+    }
+}
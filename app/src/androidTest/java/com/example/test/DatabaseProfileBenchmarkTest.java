@@ -0,0 +1,104 @@
+package com.example.test;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs four reader threads (first page plus a full-text search) against one writer thread
+ * inserting notes one at a time, for a fixed duration, once with Room's default settings
+ * and once with DatabaseProfile.TUNED, and reports reads and writes per second. The rates
+ * depend on the device and on what else it is doing, so they are logged, not compared.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseProfileBenchmarkTest {
+    private static final String TAG = "DatabaseProfileBenchmark";
+    private static final int SEED_NOTES = 5_000;
+    private static final int READER_THREADS = 4;
+    private static final long DURATION_MS = 5_000;
+
+    private static class Result {
+        long reads;
+        long writes;
+    }
+
+    private Result run(DatabaseProfile profile) throws InterruptedException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String name = "profile_benchmark_" + profile.name;
+        context.deleteDatabase(name);
+        NoteDatabase database = NoteDatabase.build(context, name, profile);
+        NoteDao noteDao = database.noteDao();
+
+        try {
+            List<Note> seed = new ArrayList<>();
+            for (int i = 0; i < SEED_NOTES; i++) {
+                seed.add(new Note("Seed note " + i + " about meetings, budgets and groceries"));
+            }
+            noteDao.insert(seed);
+
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicLong reads = new AtomicLong();
+            AtomicLong writes = new AtomicLong();
+            List<Thread> threads = new ArrayList<>();
+
+            for (int i = 0; i < READER_THREADS; i++) {
+                threads.add(new Thread(() -> {
+                    while (!stop.get()) {
+                        noteDao.getFirstNotesPage(NotePagingSource.PAGE_SIZE);
+                        noteDao.searchNotes("meet* budg*");
+                        reads.addAndGet(2);
+                    }
+                }, "reader-" + i));
+            }
+            threads.add(new Thread(() -> {
+                int i = 0;
+                while (!stop.get()) {
+                    noteDao.insert(new Note("Written note " + i++));
+                    writes.incrementAndGet();
+                }
+            }, "writer"));
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            Thread.sleep(DURATION_MS);
+            stop.set(true);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            Result result = new Result();
+            result.reads = reads.get();
+            result.writes = writes.get();
+            Log.i(TAG, String.format("%s: %.0f reads/s, %.0f writes/s", profile,
+                    result.reads * 1000.0 / DURATION_MS, result.writes * 1000.0 / DURATION_MS));
+            return result;
+        } finally {
+            database.close();
+            context.deleteDatabase(name);
+        }
+    }
+
+    @Test
+    public void compareDefaultAndTunedProfiles() throws InterruptedException {
+        Result defaults = run(DatabaseProfile.DEFAULT);
+        Result tuned = run(DatabaseProfile.TUNED);
+
+        Log.i(TAG, String.format("Tuned vs default: %.2fx reads, %.2fx writes",
+                (double) tuned.reads / defaults.reads, (double) tuned.writes / defaults.writes));
+        assertTrue(defaults.reads > 0 && tuned.reads > 0);
+        assertTrue(defaults.writes > 0 && tuned.writes > 0);
+    }
+}
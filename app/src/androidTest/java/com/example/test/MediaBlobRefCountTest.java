@@ -0,0 +1,89 @@
+package com.example.test;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteConstraintException;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the media_blobs ref_count triggers stay in step with the media rows when a
+ * row is saved again, the way NoteRepository.saveNoteWithMedia saves a note's media.
+ * The database is built through NoteDatabase.build, which installs the triggers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MediaBlobRefCountTest {
+    private static final String DATABASE_NAME = "blob_ref_count_test";
+
+    private Context context;
+    private NoteDatabase database;
+    private MediaDao mediaDao;
+    private MediaBlobDao mediaBlobDao;
+    private Note note;
+
+    @Before
+    public void createDatabase() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        database = NoteDatabase.build(context, DATABASE_NAME, DatabaseProfile.DEFAULT);
+        mediaDao = database.mediaDao();
+        mediaBlobDao = database.mediaBlobDao();
+
+        note = new Note("Note with a photo");
+        database.noteDao().insert(note);
+        mediaBlobDao.insert(new MediaBlob("hash-a", "/blobs/a", 100));
+        mediaBlobDao.insert(new MediaBlob("hash-b", "/blobs/b", 200));
+    }
+
+    @After
+    public void deleteDatabase() {
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    private Media createMedia(String hash) {
+        Media media = new Media(note.getId(), Media.TYPE_IMAGE, "/blobs/a");
+        media.setContentHash(hash);
+        return media;
+    }
+
+    @Test
+    public void savingExistingMediaAgainKeepsRefCount() {
+        Media media = createMedia("hash-a");
+        mediaDao.insert(media);
+        assertEquals(1, mediaBlobDao.getBlob("hash-a").getRefCount());
+
+        mediaDao.upsert(media);
+        mediaDao.upsert(Collections.singletonList(media));
+        assertEquals(1, mediaBlobDao.getBlob("hash-a").getRefCount());
+    }
+
+    @Test
+    public void savingMediaWithNewHashMovesReference() {
+        Media media = createMedia("hash-a");
+        mediaDao.insert(media);
+
+        media.setContentHash("hash-b");
+        mediaDao.upsert(media);
+        assertEquals(0, mediaBlobDao.getBlob("hash-a").getRefCount());
+        assertEquals(1, mediaBlobDao.getBlob("hash-b").getRefCount());
+    }
+
+    @Test
+    public void insertingExistingMediaFails() {
+        Media media = createMedia("hash-a");
+        mediaDao.insert(media);
+
+        assertThrows(SQLiteConstraintException.class, () -> mediaDao.insert(media));
+        assertEquals(1, mediaBlobDao.getBlob("hash-a").getRefCount());
+    }
+}
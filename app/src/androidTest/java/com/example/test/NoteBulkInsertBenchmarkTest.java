@@ -0,0 +1,79 @@
+package com.example.test;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Imports 10,000 notes into an on-disk database, once with one insert call per note
+ * (a transaction and commit each) and once with the list overload of NoteDao.insert
+ * (a single transaction), and reports the throughput of both.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteBulkInsertBenchmarkTest {
+    private static final String TAG = "NoteBulkInsertBenchmark";
+    private static final String DATABASE_NAME = "bulk_insert_benchmark";
+    private static final int NOTE_COUNT = 10_000;
+
+    private Context context;
+    private NoteDatabase database;
+
+    @Before
+    public void createDatabase() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        database = Room.databaseBuilder(context, NoteDatabase.class, DATABASE_NAME).build();
+    }
+
+    @After
+    public void deleteDatabase() {
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static List<Note> createNotes(String prefix) {
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            notes.add(new Note(prefix + " note number " + i + " with some text to index"));
+        }
+        return notes;
+    }
+
+    @Test
+    public void bulkInsertIsFasterThanSingleInserts() {
+        NoteDao noteDao = database.noteDao();
+
+        List<Note> single = createNotes("single");
+        long start = System.nanoTime();
+        for (Note note : single) {
+            noteDao.insert(note);
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        List<Note> bulk = createNotes("bulk");
+        start = System.nanoTime();
+        noteDao.insert(bulk);
+        long bulkNanos = System.nanoTime() - start;
+
+        assertEquals(2 * NOTE_COUNT, noteDao.getAllNotes().size());
+
+        double singleRate = NOTE_COUNT / (singleNanos / 1e9);
+        double bulkRate = NOTE_COUNT / (bulkNanos / 1e9);
+        Log.i(TAG, String.format("%d notes: single inserts %.0f ms (%.0f notes/s), bulk insert %.0f ms (%.0f notes/s), %.1fx",
+                NOTE_COUNT, singleNanos / 1e6, singleRate, bulkNanos / 1e6, bulkRate, bulkRate / singleRate));
+        assertTrue(bulkNanos < singleNanos);
+    }
+}
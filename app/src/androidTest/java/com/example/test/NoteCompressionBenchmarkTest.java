@@ -0,0 +1,221 @@
+package com.example.test;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stores the same notes twice, once the way NoteDao writes them and once in the version 5
+ * layout (a single content column indexed by FTS4), and reports the database file sizes,
+ * the time to read a page of notes for the list, and the time to read every full text.
+ * Two corpora are used: log-like notes of about 200 KB, which get compressed, and ordinary
+ * short notes, which must not take more space than before.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteCompressionBenchmarkTest {
+    private static final String TAG = "NoteCompressionBenchmark";
+    private static final int LOG_COUNT = 50;
+    private static final int LOG_CHARS = 200 * 1024;
+    private static final int SHORT_COUNT = 2000;
+    private static final int READ_ROUNDS = 5;
+
+    private static class Result {
+        long fileBytes;
+        double pageMillis;
+        double fullReadMillis;
+    }
+
+    private static List<String> createLogs() {
+        Random random = new Random(42);
+        String[] levels = {"DEBUG", "INFO", "WARN", "ERROR"};
+        String[] components = {"sync", "upload", "auth", "db", "ui", "network"};
+        List<String> logs = new ArrayList<>();
+        for (int n = 0; n < LOG_COUNT; n++) {
+            StringBuilder log = new StringBuilder(LOG_CHARS);
+            long time = 1_700_000_000_000L + n * 86_400_000L;
+            while (log.length() < LOG_CHARS) {
+                time += random.nextInt(2_000);
+                log.append(String.format(Locale.US, "%d %s [%s] request %08x took %d ms, status %d\n",
+                        time, levels[random.nextInt(levels.length)], components[random.nextInt(components.length)],
+                        random.nextInt(), random.nextInt(5_000), 200 + 100 * random.nextInt(4)));
+            }
+            logs.add(log.toString());
+        }
+        return logs;
+    }
+
+    // Shopping lists, reminders and meeting notes of 20 to 1500 characters
+    private static List<String> createShortNotes() {
+        Random random = new Random(7);
+        String[] words = {"buy", "milk", "call", "mom", "meeting", "budget", "review", "tomorrow",
+                "project", "draft", "send", "invoice", "ideas", "for", "the", "weekend", "trip",
+                "book", "dentist", "at", "and", "check", "notes", "from", "team", "plan"};
+        List<String> notes = new ArrayList<>();
+        for (int n = 0; n < SHORT_COUNT; n++) {
+            int length = 20 + random.nextInt(1480);
+            StringBuilder note = new StringBuilder(length + 16);
+            while (note.length() < length) {
+                if (note.length() > 0) {
+                    note.append(random.nextInt(8) == 0 ? ".\n" : " ");
+                }
+                note.append(words[random.nextInt(words.length)]);
+            }
+            notes.add(note.toString());
+        }
+        return notes;
+    }
+
+    private static long fileSize(Context context, String name) {
+        File file = context.getDatabasePath(name);
+        return file.length() + new File(file.getPath() + "-wal").length();
+    }
+
+    private static Result finish(Context context, String name, long pageNanos, long fullReadNanos) {
+        Result result = new Result();
+        result.fileBytes = fileSize(context, name);
+        result.pageMillis = pageNanos / 1e6 / READ_ROUNDS;
+        result.fullReadMillis = fullReadNanos / 1e6 / READ_ROUNDS;
+        Log.i(TAG, String.format(Locale.US, "%s: %d KB on disk, list page %.1f ms, all texts %.1f ms",
+                name, result.fileBytes / 1024, result.pageMillis, result.fullReadMillis));
+        return result;
+    }
+
+    // The current layout, written and read through NoteDao
+    private Result runCurrent(String name, List<String> texts) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(name);
+        NoteDatabase database = NoteDatabase.build(context, name, DatabaseProfile.DEFAULT);
+        NoteDao noteDao = database.noteDao();
+
+        try {
+            List<Note> notes = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                Note note = new Note(texts.get(i));
+                note.setTimestamp(i);
+                notes.add(note);
+            }
+            noteDao.insert(notes);
+
+            long pageNanos = 0;
+            long fullReadNanos = 0;
+            for (int round = 0; round < READ_ROUNDS; round++) {
+                long start = System.nanoTime();
+                List<NoteListItem> page = noteDao.getFirstNotesPage(NotePagingSource.PAGE_SIZE);
+                for (NoteListItem note : page) {
+                    assertNotNull(note.getPreview());
+                }
+                pageNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<Note> all = noteDao.getAllNotes();
+                for (Note note : all) {
+                    assertEquals(texts.get((int) note.getTimestamp()), note.getContent());
+                }
+                fullReadNanos += System.nanoTime() - start;
+            }
+            database.close();
+            return finish(context, name, pageNanos, fullReadNanos);
+        } finally {
+            if (database.isOpen()) {
+                database.close();
+            }
+            context.deleteDatabase(name);
+        }
+    }
+
+    // The version 5 notes table and full-text index, as created by MIGRATION_2_3 and
+    // MIGRATION_4_5, read with the queries NoteDao used then
+    private Result runVersion5(String name, List<String> texts) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(name);
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(name), null);
+
+        try {
+            db.execSQL("CREATE TABLE `notes` (`id` TEXT NOT NULL, `content` TEXT, " +
+                    "`timestamp` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            db.execSQL("CREATE INDEX `index_notes_timestamp_id` ON `notes` (`timestamp`, `id`)");
+            db.execSQL("CREATE VIRTUAL TABLE `notes_fts` USING FTS4(`content` TEXT, content=`notes`)");
+            db.execSQL("CREATE TRIGGER room_fts_content_sync_notes_fts_AFTER_INSERT " +
+                    "AFTER INSERT ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `content`) " +
+                    "VALUES (NEW.`rowid`, NEW.`content`); END");
+
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < texts.size(); i++) {
+                    db.execSQL("INSERT INTO notes (id, content, timestamp) VALUES (?, ?, ?)",
+                            new Object[] {new Note().getId(), texts.get(i), i});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            long pageNanos = 0;
+            long fullReadNanos = 0;
+            for (int round = 0; round < READ_ROUNDS; round++) {
+                long start = System.nanoTime();
+                try (Cursor cursor = db.rawQuery("SELECT * FROM notes ORDER BY timestamp DESC, id DESC LIMIT ?",
+                        new String[] {String.valueOf(NotePagingSource.PAGE_SIZE)})) {
+                    while (cursor.moveToNext()) {
+                        assertNotNull(NoteBody.preview(cursor.getString(1)));
+                    }
+                }
+                pageNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                try (Cursor cursor = db.rawQuery("SELECT * FROM notes ORDER BY timestamp DESC, id DESC", null)) {
+                    while (cursor.moveToNext()) {
+                        assertEquals(texts.get((int) cursor.getLong(2)), cursor.getString(1));
+                    }
+                }
+                fullReadNanos += System.nanoTime() - start;
+            }
+            db.close();
+            return finish(context, name, pageNanos, fullReadNanos);
+        } finally {
+            if (db.isOpen()) {
+                db.close();
+            }
+            context.deleteDatabase(name);
+        }
+    }
+
+    @Test
+    public void compressedLogsTakeLessSpace() {
+        List<String> logs = createLogs();
+        Result version5 = runVersion5("compression_benchmark_logs_v5", logs);
+        Result current = runCurrent("compression_benchmark_logs", logs);
+
+        Log.i(TAG, String.format(Locale.US, "Logs: current database is %.1f%% of the version 5 one",
+                100.0 * current.fileBytes / version5.fileBytes));
+        assertTrue(current.fileBytes < version5.fileBytes);
+    }
+
+    @Test
+    public void shortNotesTakeNoMoreSpace() {
+        List<String> notes = createShortNotes();
+        Result version5 = runVersion5("compression_benchmark_short_v5", notes);
+        Result current = runCurrent("compression_benchmark_short", notes);
+
+        Log.i(TAG, String.format(Locale.US, "Short notes: current database is %.1f%% of the version 5 one",
+                100.0 * current.fileBytes / version5.fileBytes));
+        // Each text is stored once in both layouts; the two empty columns and page
+        // rounding are all that may differ
+        assertTrue(current.fileBytes <= version5.fileBytes * 1.05);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.test;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Flings the note list of MainActivity down and back up over a few hundred notes, some of
+ * them with media, and logs per fling how many note cards and media tiles were created
+ * and bound per second. Once the shared pools are warm, creations should stay near zero
+ * while binds keep up with the scrolling. Holders are counted from RecyclerView
+ * callbacks, so the adapters need no hooks.
+ *
+ * MainActivity only works on the app database, so the notes are added there. Their ids
+ * carry NOTE_ID_PREFIX, and any left over by a run that died before cleaning up are
+ * removed before the next one. The media rows already have a thumbnail, a file in the
+ * test's cache directory, so ThumbnailQueue never picks them up.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScrollBenchmarkTest {
+    private static final String TAG = "ScrollBenchmark";
+    private static final String NOTE_ID_PREFIX = "scroll-benchmark-";
+    private static final int NOTE_COUNT = 300;
+    private static final int MEDIA_PER_NOTE = 3;
+    private static final int FLING_COUNT = 8;
+    private static final long LOAD_DELAY_MS = 2000;
+    private static final long FLING_INTERVAL_MS = 1500;
+
+    private Context context;
+    private NoteDatabase database;
+    private File mediaDirectory;
+
+    // Counts the holders of one list: created is the number of distinct holders, bound the
+    // number of times one was attached fresh from onCreateViewHolder or after going through
+    // the recycled pool, both of which run onBindViewHolder. Only touched on the main thread.
+    private static class HolderCounter implements RecyclerView.OnChildAttachStateChangeListener,
+            RecyclerView.RecyclerListener {
+        private final RecyclerView recyclerView;
+        private final Set<RecyclerView.ViewHolder> holders;
+        private final Set<RecyclerView.ViewHolder> recycled;
+        private final Runnable onAttached;
+        int bound;
+
+        HolderCounter(RecyclerView recyclerView, Set<RecyclerView.ViewHolder> holders,
+                      Set<RecyclerView.ViewHolder> recycled, Runnable onAttached) {
+            this.recyclerView = recyclerView;
+            this.holders = holders;
+            this.recycled = recycled;
+            this.onAttached = onAttached;
+            recyclerView.addOnChildAttachStateChangeListener(this);
+            recyclerView.addRecyclerListener(this);
+        }
+
+        @Override
+        public void onChildViewAttachedToWindow(@NonNull View view) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(view);
+            // Non-short-circuit: a new holder must also be recorded, a recycled one forgotten
+            if (holders.add(holder) | recycled.remove(holder)) {
+                bound++;
+            }
+            if (onAttached != null) {
+                onAttached.run();
+            }
+        }
+
+        @Override
+        public void onChildViewDetachedFromWindow(@NonNull View view) {
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+            recycled.add(holder);
+        }
+    }
+
+    // Note cards, and the media tiles of every card, which move between cards through
+    // one shared pool
+    private static class Counts {
+        final Set<RecyclerView.ViewHolder> noteHolders = identitySet();
+        final Set<RecyclerView.ViewHolder> recycledNotes = identitySet();
+        final Set<RecyclerView.ViewHolder> mediaHolders = identitySet();
+        final Set<RecyclerView.ViewHolder> recycledMedia = identitySet();
+        final Set<RecyclerView> mediaLists = identitySet();
+        final List<HolderCounter> mediaCounters = new ArrayList<>();
+        HolderCounter noteCounter;
+
+        private static <T> Set<T> identitySet() {
+            return Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+
+        void attach(RecyclerView notesRecyclerView) {
+            noteCounter = new HolderCounter(notesRecyclerView, noteHolders, recycledNotes, () -> {
+                for (int i = 0; i < notesRecyclerView.getChildCount(); i++) {
+                    RecyclerView mediaList = notesRecyclerView.getChildAt(i).findViewById(R.id.noteMediaRecyclerView);
+                    if (mediaList != null && mediaLists.add(mediaList)) {
+                        mediaCounters.add(new HolderCounter(mediaList, mediaHolders, recycledMedia, null));
+                    }
+                }
+            });
+        }
+
+        // Notes created, notes bound, media created, media bound
+        long[] snapshot() {
+            long mediaBound = 0;
+            for (HolderCounter counter : mediaCounters) {
+                mediaBound += counter.bound;
+            }
+            return new long[] {noteHolders.size(), noteCounter.bound, mediaHolders.size(), mediaBound};
+        }
+    }
+
+    @Before
+    public void createNotes() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = NoteDatabase.getDatabase(context);
+        deleteBenchmarkNotes();
+
+        mediaDirectory = new File(context.getCacheDir(), "scroll_benchmark");
+        mediaDirectory.mkdirs();
+        File thumbnail = new File(mediaDirectory, "thumbnail.jpg");
+        Bitmap bitmap = Bitmap.createBitmap(128, 128, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.GRAY);
+        try (FileOutputStream out = new FileOutputStream(thumbnail)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, out);
+        }
+
+        List<Note> notes = new ArrayList<>();
+        List<Media> mediaList = new ArrayList<>();
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            Note note = new Note("Scroll benchmark note " + i + "\nwith a second line of text");
+            note.setId(NOTE_ID_PREFIX + i);
+            notes.add(note);
+            if (i % 3 == 0) {
+                for (int m = 0; m < MEDIA_PER_NOTE; m++) {
+                    Media media = new Media(note.getId(), Media.TYPE_IMAGE, thumbnail.getAbsolutePath());
+                    media.setThumbnailUri(thumbnail.getAbsolutePath());
+                    mediaList.add(media);
+                }
+            }
+        }
+        database.noteDao().insert(notes);
+        database.mediaDao().insert(mediaList);
+    }
+
+    @After
+    public void deleteNotes() {
+        deleteBenchmarkNotes();
+        File[] files = mediaDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mediaDirectory.delete();
+    }
+
+    // Media rows go with their notes through the foreign key
+    private void deleteBenchmarkNotes() {
+        database.getOpenHelper().getWritableDatabase()
+                .execSQL("DELETE FROM notes WHERE id LIKE ?", new Object[] {NOTE_ID_PREFIX + "%"});
+    }
+
+    @Test
+    public void flingReusesCardsAndTiles() throws InterruptedException {
+        Counts counts = new Counts();
+        int[] velocity = new int[1];
+        long[][] sample = new long[1][];
+
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            scenario.onActivity(activity -> {
+                velocity[0] = ViewConfiguration.get(activity).getScaledMaximumFlingVelocity() / 2;
+                counts.attach(activity.findViewById(R.id.notesRecyclerView));
+            });
+            Thread.sleep(LOAD_DELAY_MS);
+
+            scenario.onActivity(activity -> sample[0] = counts.snapshot());
+            long[] last = sample[0];
+            long flingStart = System.nanoTime();
+            long totalNanos = 0;
+            for (int i = 0; i < FLING_COUNT; i++) {
+                int direction = i % 2 == 0 ? 1 : -1;
+                scenario.onActivity(activity -> activity.<RecyclerView>findViewById(R.id.notesRecyclerView)
+                        .fling(0, direction * velocity[0]));
+                Thread.sleep(FLING_INTERVAL_MS);
+
+                scenario.onActivity(activity -> sample[0] = counts.snapshot());
+                long now = System.nanoTime();
+                double seconds = (now - flingStart) / 1e9;
+                totalNanos += now - flingStart;
+                flingStart = now;
+                long[] current = sample[0];
+                Log.i(TAG, String.format(Locale.ROOT,
+                        "fling %d: notes created/s=%.1f bound/s=%.1f, media created/s=%.1f bound/s=%.1f",
+                        i + 1, (current[0] - last[0]) / seconds, (current[1] - last[1]) / seconds,
+                        (current[2] - last[2]) / seconds, (current[3] - last[3]) / seconds));
+                last = current;
+            }
+
+            double totalSeconds = totalNanos / 1e9;
+            scenario.onActivity(activity -> Log.i(TAG, String.format(Locale.ROOT,
+                    "Total over %.1f s: notes created=%d bound=%d, media created=%d bound=%d, %s",
+                    totalSeconds, sample[0][0], sample[0][1], sample[0][2], sample[0][3],
+                    PreviewCache.getInstance(activity))));
+        }
+
+        // The list scrolled past more cards than were ever created
+        assertTrue(sample[0][1] > sample[0][0]);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.test;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the timestamp-ordered queries of NoteDao and
+ * MediaDao are answered from the timestamp indexes, without a temporary B-tree to sort
+ * the rows. The statements mirror the ones in the DAOs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TimestampQueryPlanTest {
+    private static final String NOTES_INDEX = "index_notes_timestamp_id";
+    private static final String MEDIA_INDEX = "index_media_note_id_timestamp";
+    private static final String LIST_ITEM = "SELECT " + NoteDao.LIST_ITEM_COLUMNS + " FROM notes";
+
+    private NoteDatabase database;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, NoteDatabase.class).build();
+        db = database.getOpenHelper().getWritableDatabase();
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    private List<String> explain(String sql, Object... args) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        return plan;
+    }
+
+    private void assertIndexedWithoutSort(String index, String sql, Object... args) {
+        List<String> plan = explain(sql, args);
+        boolean usesIndex = false;
+        for (String step : plan) {
+            assertFalse("Sorts rows: " + plan, step.contains("TEMP B-TREE"));
+            usesIndex |= step.contains(index);
+        }
+        assertTrue("Does not use " + index + ": " + plan, usesIndex);
+    }
+
+    // For queries whose result is sorted in small groups: every table is looked up through
+    // an index or by rowid, none is scanned
+    private void assertIndexedWithoutScan(String index, String sql, Object... args) {
+        List<String> plan = explain(sql, args);
+        boolean usesIndex = false;
+        for (String step : plan) {
+            assertFalse("Scans a table: " + plan, step.startsWith("SCAN"));
+            usesIndex |= step.contains(index);
+        }
+        assertTrue("Does not use " + index + ": " + plan, usesIndex);
+    }
+
+    @Test
+    public void noteListQueriesUseTimestampIndex() {
+        assertIndexedWithoutSort(NOTES_INDEX,
+                "SELECT * FROM notes ORDER BY timestamp DESC, id DESC");
+        assertIndexedWithoutSort(NOTES_INDEX,
+                LIST_ITEM + " ORDER BY timestamp DESC, id DESC LIMIT ?", 50);
+        assertIndexedWithoutSort(NOTES_INDEX,
+                LIST_ITEM + " WHERE timestamp <= ? AND (timestamp < ? OR id < ?) " +
+                        "ORDER BY timestamp DESC, id DESC LIMIT ?", 1000L, 1000L, "id", 50);
+        assertIndexedWithoutSort(NOTES_INDEX,
+                LIST_ITEM + " WHERE timestamp >= ? AND (timestamp > ? OR id > ?) " +
+                        "ORDER BY timestamp ASC, id ASC LIMIT ?", 1000L, 1000L, "id", 50);
+    }
+
+    @Test
+    public void noteRangeQueriesUseTimestampIndex() {
+        assertIndexedWithoutSort(NOTES_INDEX,
+                LIST_ITEM + " WHERE timestamp >= ? AND timestamp < ? " +
+                        "ORDER BY timestamp DESC, id DESC LIMIT ?", 0L, 1000L, 20);
+        assertIndexedWithoutSort(NOTES_INDEX,
+                "SELECT COUNT(*) FROM notes WHERE timestamp >= ? AND timestamp < ?", 0L, 1000L);
+    }
+
+    @Test
+    public void mediaQueriesUseNoteTimestampIndex() {
+        assertIndexedWithoutSort(MEDIA_INDEX,
+                "SELECT * FROM media WHERE note_id = ? ORDER BY timestamp ASC", "note");
+        assertIndexedWithoutSort(MEDIA_INDEX,
+                "SELECT * FROM media WHERE note_id = ? ORDER BY timestamp DESC LIMIT ?", "note", 3);
+        assertIndexedWithoutSort(MEDIA_INDEX,
+                "SELECT * FROM media WHERE note_id = ? AND timestamp >= ? AND timestamp < ? " +
+                        "ORDER BY timestamp ASC", "note", 0L, 1000L);
+        // Only the few rows of each note are sorted, so a temporary B-tree is fine here
+        assertIndexedWithoutScan(MEDIA_INDEX,
+                "SELECT media.*, (SELECT COUNT(*) FROM media AS c WHERE c.note_id = notes.id) AS media_count " +
+                        "FROM notes JOIN media ON media.rowid IN " +
+                        "(SELECT m.rowid FROM media AS m WHERE m.note_id = notes.id ORDER BY m.timestamp ASC LIMIT ?) " +
+                        "WHERE notes.id IN (?, ?) ORDER BY notes.id, media.timestamp ASC", 3, "a", "b");
+    }
+
+    @Test
+    public void noteDeleteCascadeFindsMediaByIndex() {
+        // The foreign key lookup done for each deleted note
+        assertIndexedWithoutSort(MEDIA_INDEX, "SELECT id FROM media WHERE note_id = ?", "note");
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.test;
+
+// Case-insensitive substring search that works directly on the text, without creating a
+// lowercase copy of it. The pattern is folded once and a Boyer-Moore-Horspool skip table
+// is precomputed, so one matcher can be reused across any number of notes without
+// allocating. Instances are immutable and safe to share between threads.
+public final class CaseInsensitiveMatcher {
+
+    private static final int TABLE_SIZE = 256;
+
+    private final char[] pattern;
+    private final int[] skip = new int[TABLE_SIZE];
+
+    public CaseInsensitiveMatcher(String pattern) {
+        this.pattern = new char[pattern.length()];
+        for (int i = 0; i < this.pattern.length; i++) {
+            this.pattern[i] = fold(pattern.charAt(i));
+        }
+
+        // Characters are bucketed by their low byte; a bucket keeps the smallest shift of
+        // any pattern character in it, so a shift can never skip past a match
+        int length = this.pattern.length;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            skip[i] = Math.max(length, 1);
+        }
+        for (int i = 0; i < length - 1; i++) {
+            skip[this.pattern[i] & 0xFF] = length - 1 - i;
+        }
+    }
+
+    public int length() {
+        return pattern.length;
+    }
+
+    public boolean containedIn(CharSequence text) {
+        return indexIn(text, 0) != -1;
+    }
+
+    // True if the pattern occurs at the start of a word, the way a full-text prefix term matches
+    public boolean isWordPrefixIn(CharSequence text) {
+        int index = indexIn(text, 0);
+        while (index != -1) {
+            if (index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1))) {
+                return true;
+            }
+            index = indexIn(text, index + 1);
+        }
+        return false;
+    }
+
+    // Index of the first case-insensitive occurrence at or after fromIndex, or -1
+    public int indexIn(CharSequence text, int fromIndex) {
+        int length = pattern.length;
+        int textLength = text.length();
+        if (length == 0) {
+            return fromIndex <= textLength ? fromIndex : -1;
+        }
+
+        int last = length - 1;
+        int i = Math.max(fromIndex, 0);
+        while (i <= textLength - length) {
+            char c = fold(text.charAt(i + last));
+            if (c == pattern[last]) {
+                int j = last - 1;
+                while (j >= 0 && fold(text.charAt(i + j)) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+            i += skip[c & 0xFF];
+        }
+        return -1;
+    }
+
+    static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
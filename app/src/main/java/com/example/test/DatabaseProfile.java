@@ -0,0 +1,90 @@
+package com.example.test;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+// Connection settings for NoteDatabase. TUNED is what the app runs with; DEFAULT keeps
+// Room's own settings and is there to measure against. Room's AUTOMATIC journal mode
+// already picks WAL except on low-RAM devices, so the two mostly differ in the pragmas.
+//
+// In WAL mode readers never block the writer or each other, so the framework's connection
+// pool can serve several reads at once while a write commits. synchronous=NORMAL only
+// syncs the WAL at checkpoints, which stays crash-safe in WAL mode (a power loss can at
+// most lose the last commits).
+//
+// The pragmas are set in onOpen, on the primary connection, which every write and
+// transaction goes through. synchronous only matters for writes, so it fully applies.
+// cache_size and mmap_size are per connection, though: the read-only connections the
+// framework pool opens later for concurrent reads in WAL mode keep SQLite's defaults,
+// so these two only speed up writes and the reads that share the primary connection.
+public final class DatabaseProfile {
+    private static final String TAG = "DatabaseProfile";
+
+    public static final DatabaseProfile DEFAULT = new DatabaseProfile(
+            "default", RoomDatabase.JournalMode.AUTOMATIC, null, 0, 0);
+
+    public static final DatabaseProfile TUNED = new DatabaseProfile(
+            "tuned", RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING, "NORMAL", -8 * 1024, 64L * 1024 * 1024);
+
+    final String name;
+    final RoomDatabase.JournalMode journalMode;
+    // Value for PRAGMA synchronous, or null to keep the default
+    final String synchronous;
+    // Value for PRAGMA cache_size: pages if positive, KiB if negative, 0 to keep the default
+    final int cacheSize;
+    // Bytes for PRAGMA mmap_size, 0 to keep memory-mapped I/O off
+    final long mmapSize;
+
+    public DatabaseProfile(String name, RoomDatabase.JournalMode journalMode, String synchronous,
+                           int cacheSize, long mmapSize) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+    }
+
+    <T extends RoomDatabase> RoomDatabase.Builder<T> applyTo(RoomDatabase.Builder<T> builder) {
+        return builder
+                .setJournalMode(journalMode)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase database) {
+                        applyPragmas(database);
+                    }
+                });
+    }
+
+    private void applyPragmas(SupportSQLiteDatabase database) {
+        if (synchronous != null) {
+            pragma(database, "synchronous = " + synchronous);
+        }
+        if (cacheSize != 0) {
+            pragma(database, "cache_size = " + cacheSize);
+        }
+        if (mmapSize > 0) {
+            pragma(database, "mmap_size = " + mmapSize);
+        }
+        Log.d(TAG, "Opened database with profile " + this);
+    }
+
+    // Some pragmas return a row, which execSQL refuses, so all of them go through query
+    private static void pragma(SupportSQLiteDatabase database, String pragma) {
+        try (Cursor cursor = database.query("PRAGMA " + pragma)) {
+            cursor.moveToFirst();
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting PRAGMA " + pragma, e);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return name + "{journalMode=" + journalMode + ", synchronous=" + synchronous
+                + ", cacheSize=" + cacheSize + ", mmapSize=" + mmapSize + "}";
+    }
+}
@@ -5,6 +5,7 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.app.AlertDialog;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
@@ -43,6 +44,8 @@ import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteListener {
     private static final String TAG = "MainActivity";
@@ -52,8 +55,8 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
     private LinearLayout emptyStateContainer;
     private EditText searchEditText;
     private ImageButton clearSearchButton;
-    private List<Note> notesList;
     private NoteRepository noteRepository;
+    private NoteSearchPipeline searchPipeline;
     private ExtendedFloatingActionButton addNoteFab;
 
     private static final int PERMISSION_REQUEST_CODE = 1003;
@@ -117,13 +120,30 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
     }
     
     private void setupRecyclerView() {
-        notesList = new ArrayList<>();
         noteAdapter = new NoteAdapter(this, this);
         
         LinearLayoutManager layoutManager = new LinearLayoutManager(this);
         notesRecyclerView.setLayoutManager(layoutManager);
         notesRecyclerView.setAdapter(noteAdapter);
         
+        // Notes arrive asynchronously page by page, so keep the empty state in sync with the adapter
+        noteAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+            
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+            
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+        
         // Add scroll listener to hide/show FAB
         notesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
@@ -140,6 +160,21 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
     }
     
     private void setupSearchFunctionality() {
+        // Searches are debounced and run off the main thread; only the latest query's
+        // results reach the adapter
+        searchPipeline = new NoteSearchPipeline(noteRepository, new NoteSearchPipeline.Listener() {
+            @Override
+            public void onSearchResults(String query, List<NoteListItem> results) {
+                Log.d(TAG, "Search for \"" + query + "\" found " + results.size() + " notes");
+                noteAdapter.setSearchResults(results);
+            }
+            
+            @Override
+            public void onSearchCleared() {
+                noteAdapter.clearSearch();
+            }
+        });
+        
         // Add text change listener to search EditText
         searchEditText.addTextChangedListener(new TextWatcher() {
             @Override
@@ -149,8 +184,8 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                // Filter notes based on search query
-                noteAdapter.getFilter().filter(s);
+                // Search notes based on the query
+                searchPipeline.onQueryChanged(s);
                 
                 // Show/hide clear button based on text
                 if (s.length() > 0) {
@@ -215,90 +250,42 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
     }
     
     @Override
-    protected void onResume() {
-        super.onResume();
-        Log.d(TAG, "onResume: Refreshing notes");
-        // Refresh notes when activity resumes
-        loadNotesFromDb();
+    protected void onDestroy() {
+        super.onDestroy();
+        if (searchPipeline != null) {
+            searchPipeline.cancel();
+        }
+        
+        // Detaching the adapter unregisters its database and thumbnail observers
+        notesRecyclerView.setAdapter(null);
+        
+        // Stop copies that are still running when the screen is closed for good
+        if (isFinishing()) {
+            for (Future<?> mediaImport : activeImports) {
+                mediaImport.cancel(true);
+            }
+            activeImports.clear();
+        }
     }
     
     private void loadNotesFromDb() {
-        try {
-            Log.d(TAG, "loadNotesFromDb: Loading notes from database");
-            
-            // Clear the current list to avoid duplicates
-            if (notesList != null) {
-                notesList.clear();
-            } else {
-                notesList = new ArrayList<>();
-            }
-            
-            // Get fresh data from database
-            List<Note> notes = noteRepository.getAllNotes();
-            
-            if (notes != null && !notes.isEmpty()) {
-                Log.d(TAG, "loadNotesFromDb: Loaded " + notes.size() + " notes");
-                
-                // Add all notes from database to our list
-                notesList.addAll(notes);
-                
-                // Log all notes for debugging
-                for (Note note : notesList) {
-                    Log.d(TAG, "Note in list: " + note.getId() + " - " + note.getContent());
-                }
-            } else {
-                Log.w(TAG, "loadNotesFromDb: No notes loaded from database");
-            }
-            
-            // Update the adapter with the current list
-            noteAdapter.setNotes(notesList);
-            
-            // Clear any search filter
-            searchEditText.setText("");
-            
-            // Update empty view
-            updateEmptyView();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading notes", e);
-            Toast.makeText(this, "Error loading notes", Toast.LENGTH_SHORT).show();
-        }
+        Log.d(TAG, "loadNotesFromDb: Loading notes from database");
+        
+        // Clear any search filter
+        searchEditText.setText("");
+        
+        // Reload the first page; further pages are loaded by the adapter while scrolling
+        noteAdapter.refresh();
     }
     
-    private void searchNotes(String query) {
-        try {
-            Log.d(TAG, "searchNotes: Searching for: " + query);
-            
-            if (query == null || query.trim().isEmpty()) {
-                // If query is empty, load all notes
-                loadNotesFromDb();
-                return;
-            }
-            
-            // Search notes in database
-            List<Note> searchResults = noteRepository.searchNotes(query);
-            
-            if (searchResults != null && !searchResults.isEmpty()) {
-                Log.d(TAG, "searchNotes: Found " + searchResults.size() + " notes");
-                
-                // Update adapter with search results
-                noteAdapter.setNotes(searchResults);
-            } else {
-                Log.w(TAG, "searchNotes: No notes found for query: " + query);
-                
-                // Clear adapter if no results
-                noteAdapter.setNotes(new ArrayList<>());
-            }
-            
-            // Update empty view
-            updateEmptyView();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error searching notes", e);
-            Toast.makeText(this, "Error searching notes", Toast.LENGTH_SHORT).show();
+    // Clears the search box, which takes the adapter back to the paged list; the list
+    // itself is kept up to date by the adapter's change observer
+    private void showFullList() {
+        if (searchEditText.length() > 0) {
+            searchEditText.setText("");
         }
     }
-
+    
     private void updateEmptyView() {
         if (noteAdapter.getItemCount() == 0) {
             // Show empty state with animation
@@ -347,6 +334,10 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
         // Create a wrapper class to hold the note reference that can be modified in lambdas
         class NoteWrapper {
             Note note;
+            // The note was created by this dialog (autosave or an attachment), not opened
+            boolean createdByDialog;
+            // The text was changed and autosaved since the dialog opened
+            boolean edited;
             
             NoteWrapper(Note note) {
                 this.note = note;
@@ -380,6 +371,7 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
                 Intent intent = new Intent(MainActivity.this, MediaViewerActivity.class);
                 intent.putExtra(MediaViewerActivity.EXTRA_MEDIA_URI, media.getUri());
                 intent.putExtra(MediaViewerActivity.EXTRA_MEDIA_TYPE, media.getType());
+                intent.putExtra(MediaViewerActivity.EXTRA_MEDIA_ID, media.getId());
                 startActivity(intent);
             }
             
@@ -387,13 +379,15 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
             public void onMediaDelete(Media media, int mediaPosition) {
                 // Delete media
                 MediaRepository mediaRepository = new MediaRepository(getApplication());
-                if (mediaRepository.delete(media)) {
-                    // Remove from adapter
-                    mediaAdapter.removeMedia(mediaPosition);
-                    Toast.makeText(MainActivity.this, "Media deleted", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(MainActivity.this, "Error deleting media", Toast.LENGTH_SHORT).show();
-                }
+                mediaRepository.deleteAsync(media, success -> {
+                    if (success) {
+                        // Remove from adapter
+                        mediaAdapter.removeMedia(media);
+                        Toast.makeText(MainActivity.this, "Media deleted", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(MainActivity.this, "Error deleting media", Toast.LENGTH_SHORT).show();
+                    }
+                });
             }
         });
         
@@ -403,10 +397,11 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
         // Load existing media if editing a note
         if (noteWrapper.note != null) {
             MediaRepository mediaRepository = new MediaRepository(getApplication());
-            List<Media> mediaList = mediaRepository.getMediaForNote(noteWrapper.note.getId());
-            if (mediaList != null && !mediaList.isEmpty()) {
-                mediaAdapter.setMediaList(mediaList);
-            }
+            mediaRepository.getMediaForNoteAsync(noteWrapper.note.getId(), mediaList -> {
+                if (mediaList != null && !mediaList.isEmpty()) {
+                    mediaAdapter.setMediaList(mediaList);
+                }
+            });
         }
 
         // Set dialog title and content based on whether we're adding or editing
@@ -416,12 +411,47 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
         } else {
             dialogTitle.setText("Add New Note");
         }
+        
+        // Autosave: every edit goes to the repository's write-behind buffer, which coalesces
+        // them and writes the latest version once typing pauses. Added after setText so
+        // opening a note does not count as an edit.
+        noteEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                // Not needed
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                // Not needed
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                String content = s.toString().trim();
+                if (content.isEmpty()) {
+                    return;
+                }
+                if (noteWrapper.note == null) {
+                    noteWrapper.note = new Note(content);
+                    noteWrapper.createdByDialog = true;
+                    Log.d(TAG, "Autosaving new note: " + noteWrapper.note.getId());
+                }
+                Note draft = new Note(content);
+                draft.setId(noteWrapper.note.getId());
+                noteRepository.saveDraft(draft);
+                noteWrapper.edited = true;
+            }
+        });
 
         AlertDialog dialog = builder.create();
         if (dialog.getWindow() != null) {
             dialog.getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
         }
 
+        // Whatever way the dialog closes, pending edits are written right away
+        dialog.setOnDismissListener(dialogInterface -> noteRepository.flushDrafts(null));
+
         dialog.show();
         
         // Apply circular reveal animation to the dialog
@@ -462,23 +492,30 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
                 Note newNote = new Note(content);
                 Log.d(TAG, "Creating new note for media: " + newNote.getId());
                 
-                if (noteRepository.insert(newNote)) {
-                    // Show image picker with the saved note ID
-                    pickImage(newNote.getId(), mediaAdapter);
-                    
-                    // Update the dialog title to reflect we're now editing
-                    dialogTitle.setText("Edit Note");
-                    
-                    // Set the note variable to the new note so subsequent operations use it
-                    noteWrapper.note = newNote;
-                    
-                    Toast.makeText(MainActivity.this, "Note created, adding image...", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(MainActivity.this, "Error creating note", Toast.LENGTH_SHORT).show();
-                }
+                // Set the note variable to the new note so subsequent operations use it
+                noteWrapper.note = newNote;
+                noteWrapper.createdByDialog = true;
+                
+                noteRepository.insertAsync(newNote, success -> {
+                    if (success) {
+                        // Show image picker with the saved note ID
+                        pickImage(newNote.getId(), mediaAdapter);
+                        
+                        // Update the dialog title to reflect we're now editing
+                        dialogTitle.setText("Edit Note");
+                        
+                        Toast.makeText(MainActivity.this, "Note created, adding image...", Toast.LENGTH_SHORT).show();
+                    } else {
+                        noteWrapper.note = null;
+                        noteWrapper.createdByDialog = false;
+                        Toast.makeText(MainActivity.this, "Error creating note", Toast.LENGTH_SHORT).show();
+                    }
+                });
             } else {
-                // Use existing note ID
-                pickImage(noteWrapper.note.getId(), mediaAdapter);
+                // Use existing note ID; an autosaved note may still be in the write buffer,
+                // and its row must exist before media can reference it
+                String noteId = noteWrapper.note.getId();
+                noteRepository.flushDrafts(success -> pickImage(noteId, mediaAdapter));
             }
         });
         
@@ -503,23 +540,30 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
                 Note newNote = new Note(content);
                 Log.d(TAG, "Creating new note for media: " + newNote.getId());
                 
-                if (noteRepository.insert(newNote)) {
-                    // Show video picker with the saved note ID
-                    pickVideo(newNote.getId(), mediaAdapter);
-                    
-                    // Update the dialog title to reflect we're now editing
-                    dialogTitle.setText("Edit Note");
-                    
-                    // Set the note variable to the new note so subsequent operations use it
-                    noteWrapper.note = newNote;
-                    
-                    Toast.makeText(MainActivity.this, "Note created, adding video...", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(MainActivity.this, "Error creating note", Toast.LENGTH_SHORT).show();
-                }
+                // Set the note variable to the new note so subsequent operations use it
+                noteWrapper.note = newNote;
+                noteWrapper.createdByDialog = true;
+                
+                noteRepository.insertAsync(newNote, success -> {
+                    if (success) {
+                        // Show video picker with the saved note ID
+                        pickVideo(newNote.getId(), mediaAdapter);
+                        
+                        // Update the dialog title to reflect we're now editing
+                        dialogTitle.setText("Edit Note");
+                        
+                        Toast.makeText(MainActivity.this, "Note created, adding video...", Toast.LENGTH_SHORT).show();
+                    } else {
+                        noteWrapper.note = null;
+                        noteWrapper.createdByDialog = false;
+                        Toast.makeText(MainActivity.this, "Error creating note", Toast.LENGTH_SHORT).show();
+                    }
+                });
             } else {
-                // Use existing note ID
-                pickVideo(noteWrapper.note.getId(), mediaAdapter);
+                // Use existing note ID; an autosaved note may still be in the write buffer,
+                // and its row must exist before media can reference it
+                String noteId = noteWrapper.note.getId();
+                noteRepository.flushDrafts(success -> pickVideo(noteId, mediaAdapter));
             }
         });
 
@@ -528,21 +572,23 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
             // Add button click animation
             animateButtonClick(v);
             
-            // If we created a note just for adding media but then cancel, delete it
-            if (noteWrapper.note != null && mediaAdapter.getItemCount() == 0) {
-                // Check if this is a newly created note (not in the adapter)
-                boolean isNewNote = true;
-                for (int i = 0; i < noteAdapter.getItemCount(); i++) {
-                    if (noteAdapter.getNoteAt(i).getId().equals(noteWrapper.note.getId())) {
-                        isNewNote = false;
-                        break;
-                    }
-                }
-                
-                if (isNewNote) {
+            // Cancel discards the text typed in this dialog, even if it was autosaved. A
+            // note this dialog created is deleted, unless attachments were added to it; an
+            // opened note gets its text back as it was when the dialog opened. Attachments
+            // are saved and deleted as soon as they are picked, so Cancel leaves them alone.
+            if (noteWrapper.createdByDialog) {
+                if (mediaAdapter.getItemCount() == 0) {
                     Log.d(TAG, "Deleting newly created note that was canceled: " + noteWrapper.note.getId());
-                    noteRepository.delete(noteWrapper.note);
+                    noteRepository.deleteAsync(noteWrapper.note, null);
                 }
+            } else if (noteWrapper.edited) {
+                Log.d(TAG, "Restoring canceled edits of note: " + initialNote.getId());
+                Note restored = new Note(initialNote.getContent());
+                restored.setId(initialNote.getId());
+                restored.setTimestamp(initialNote.getTimestamp());
+                // Replaces a pending autosave, or overwrites one already written, when the
+                // dismiss listener flushes the buffer
+                noteRepository.saveDraft(restored);
             }
             
             // Dismiss dialog with circular hide animation
@@ -556,37 +602,28 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
             String content = noteEditText.getText().toString().trim();
             if (!content.isEmpty()) {
                 try {
-                    if (noteWrapper.note != null) {
-                        // Edit existing note
-                        Log.d(TAG, "Updating note: " + noteWrapper.note.getId());
-                        noteWrapper.note.setContent(content);
-                        noteWrapper.note.setTimestamp(System.currentTimeMillis());
-                        noteRepository.update(noteWrapper.note);
-                        
-                        // Reload notes to ensure we have the latest data
-                        loadNotesFromDb();
-                        
-                        Toast.makeText(MainActivity.this, "Note updated", Toast.LENGTH_SHORT).show();
-                    } else {
-                        // Add new note
-                        Note newNote = new Note(content);
-                        Log.d(TAG, "Adding new note: " + newNote.getId());
-                        
-                        // First insert into database
-                        boolean success = noteRepository.insert(newNote);
-                        
+                    if (noteWrapper.note == null) {
+                        noteWrapper.note = new Note(content);
+                    }
+                    Log.d(TAG, (initialNote != null ? "Updating note: " : "Adding new note: ") + noteWrapper.note.getId());
+                    
+                    // Save a copy so the note shown in the list stays unchanged until the
+                    // reload, and the list diff sees the edit. It replaces any pending
+                    // autosave of the same note and is written together with it.
+                    Note savedNote = new Note(content);
+                    savedNote.setId(noteWrapper.note.getId());
+                    noteRepository.saveDraft(savedNote);
+                    noteRepository.flushDrafts(success -> {
                         if (success) {
-                            // Only update UI if database insertion was successful
-                            Log.d(TAG, "Successfully added note to database, updating UI");
+                            // The adapter picks the change up from the database; only leave
+                            // search mode so the saved note is visible in the list
+                            showFullList();
                             
-                            // Clear the list and reload from database to ensure consistency
-                            loadNotesFromDb();
-                            
-                            Toast.makeText(MainActivity.this, "Note added", Toast.LENGTH_SHORT).show();
+                            Toast.makeText(MainActivity.this, initialNote != null ? "Note updated" : "Note added", Toast.LENGTH_SHORT).show();
                         } else {
-                            Toast.makeText(MainActivity.this, "Error adding note", Toast.LENGTH_SHORT).show();
+                            Toast.makeText(MainActivity.this, "Error saving note", Toast.LENGTH_SHORT).show();
                         }
-                    }
+                    });
                     updateEmptyView();
                     
                     // Dismiss dialog with animation
@@ -647,36 +684,29 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
                 .start();
     }
 
-    private void showDeleteConfirmationDialog(Note note, int position) {
+    private void showDeleteConfirmationDialog(NoteListItem note, int position) {
         Log.d(TAG, "showDeleteConfirmationDialog: Confirming deletion of note: " + note.getId());
         
         AlertDialog dialog = new AlertDialog.Builder(this)
                 .setTitle("Delete Note")
                 .setMessage("Are you sure you want to delete this note?")
                 .setPositiveButton("Delete", (dialogInterface, which) -> {
-                    try {
-                        Log.d(TAG, "Deleting note: " + note.getId());
-                        
-                        // Delete from database first
-                        boolean success = noteRepository.delete(note);
-                        
+                    Log.d(TAG, "Deleting note: " + note.getId());
+                    
+                    // Delete from database first
+                    noteRepository.deleteByIdAsync(note.getId(), success -> {
                         if (success) {
-                            Log.d(TAG, "Database deletion successful, updating UI");
+                            Log.d(TAG, "Database deletion successful");
                             
-                            // Reload notes from database to ensure UI consistency
-                            loadNotesFromDb();
+                            // The adapter removes the row itself once the delete commits
+                            showFullList();
                             
                             Toast.makeText(MainActivity.this, "Note deleted", Toast.LENGTH_SHORT).show();
                         } else {
                             Log.e(TAG, "Database deletion failed");
                             Toast.makeText(MainActivity.this, "Error deleting note", Toast.LENGTH_SHORT).show();
                         }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error deleting note", e);
-                        Toast.makeText(MainActivity.this, "Error deleting note", Toast.LENGTH_SHORT).show();
-                        // Refresh the list to ensure UI consistency
-                        loadNotesFromDb();
-                    }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .create();
@@ -699,6 +729,7 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
     private static final int REQUEST_VIDEO_PICK = 1002;
     private String pendingNoteId;
     private MediaAdapter pendingMediaAdapter;
+    private final List<Future<?>> activeImports = new ArrayList<>();
     
     private void pickImage(String noteId, MediaAdapter mediaAdapter) {
         Log.d(TAG, "Picking image for noteId: " + noteId);
@@ -706,8 +737,10 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
         this.pendingMediaAdapter = mediaAdapter;
         
         try {
-            Intent intent = new Intent(Intent.ACTION_PICK);
+            Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
             intent.setType("image/*");
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
             intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
             startActivityForResult(Intent.createChooser(intent, "Select Image"), REQUEST_IMAGE_PICK);
         } catch (Exception e) {
@@ -722,8 +755,10 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
         this.pendingMediaAdapter = mediaAdapter;
         
         try {
-            Intent intent = new Intent(Intent.ACTION_PICK);
+            Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
             intent.setType("video/*");
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
             intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
             startActivityForResult(Intent.createChooser(intent, "Select Video"), REQUEST_VIDEO_PICK);
         } catch (Exception e) {
@@ -739,16 +774,33 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
         if (resultCode == RESULT_OK && data != null) {
             if (requestCode == REQUEST_IMAGE_PICK) {
                 // Handle image selection
-                handleMediaSelection(data.getData(), Media.TYPE_IMAGE);
+                handleMediaSelection(getSelectedUris(data), Media.TYPE_IMAGE);
             } else if (requestCode == REQUEST_VIDEO_PICK) {
                 // Handle video selection
-                handleMediaSelection(data.getData(), Media.TYPE_VIDEO);
+                handleMediaSelection(getSelectedUris(data), Media.TYPE_VIDEO);
             }
         }
     }
     
-    private void handleMediaSelection(android.net.Uri uri, int mediaType) {
-        Log.d(TAG, "Handling media selection: " + uri + ", type: " + mediaType);
+    // Multiple picks arrive as ClipData, a single pick as the intent data
+    private List<android.net.Uri> getSelectedUris(Intent data) {
+        List<android.net.Uri> uris = new ArrayList<>();
+        ClipData clipData = data.getClipData();
+        if (clipData != null) {
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                android.net.Uri uri = clipData.getItemAt(i).getUri();
+                if (uri != null) {
+                    uris.add(uri);
+                }
+            }
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
+        }
+        return uris;
+    }
+    
+    private void handleMediaSelection(List<android.net.Uri> uris, int mediaType) {
+        Log.d(TAG, "Handling media selection: " + uris.size() + " items, type: " + mediaType);
         
         if (pendingNoteId == null || pendingMediaAdapter == null) {
             Log.e(TAG, "Cannot handle media selection: pendingNoteId or pendingMediaAdapter is null");
@@ -756,43 +808,84 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.NoteL
             return;
         }
         
-        if (uri == null) {
-            Log.e(TAG, "Cannot handle media selection: uri is null");
+        if (uris.isEmpty()) {
+            Log.e(TAG, "Cannot handle media selection: no uri selected");
             Toast.makeText(this, "Error adding media: invalid media", Toast.LENGTH_SHORT).show();
             return;
         }
         
         try {
-            // Verify we can access the URI
-            getContentResolver().getType(uri);
-            
-            // Save media to app's private storage
             MediaRepository mediaRepository = new MediaRepository(getApplication());
-            Log.d(TAG, "Saving media from URI to storage...");
-            Media media = mediaRepository.saveMediaFromUri(this, uri, pendingNoteId, mediaType);
+            MediaAdapter targetAdapter = pendingMediaAdapter;
+            
+            if (uris.size() == 1) {
+                importSingleMedia(mediaRepository, targetAdapter, uris.get(0), mediaType);
+                return;
+            }
             
+            // Several files are copied in parallel and saved together
+            Log.d(TAG, "Saving " + uris.size() + " media items from URIs to storage...");
+            AtomicReference<Future<List<Media>>> importHolder = new AtomicReference<>();
+            importHolder.set(mediaRepository.importMediaBatchAsync(this, uris, pendingNoteId, mediaType, mediaList -> {
+                activeImports.remove(importHolder.get());
+                if (mediaList != null && !mediaList.isEmpty()) {
+                    Log.d(TAG, "Batch saved successfully, adding " + mediaList.size() + " items to adapter");
+                    targetAdapter.addMedia(mediaList);
+                    Toast.makeText(this, mediaList.size() + " of " + uris.size() + " items added", Toast.LENGTH_SHORT).show();
+                } else {
+                    Log.e(TAG, "Failed to save media batch");
+                    Toast.makeText(this, "Error adding media: could not save files", Toast.LENGTH_SHORT).show();
+                }
+            }));
+            activeImports.add(importHolder.get());
+        } catch (Exception e) {
+            Log.e(TAG, "Error handling media selection", e);
+            Toast.makeText(this, "Error adding media: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+    
+    private void importSingleMedia(MediaRepository mediaRepository, MediaAdapter targetAdapter,
+                                   android.net.Uri uri, int mediaType) {
+        // Verify we can access the URI
+        getContentResolver().getType(uri);
+        
+        // Save media to app's private storage
+        Log.d(TAG, "Saving media from URI to storage...");
+        AtomicReference<Future<Media>> importHolder = new AtomicReference<>();
+        importHolder.set(mediaRepository.importMediaAsync(this, uri, pendingNoteId, mediaType,
+                (copied, total) -> Log.d(TAG, "Imported " + copied + " of " + total + " bytes"),
+                media -> {
+            activeImports.remove(importHolder.get());
             if (media != null) {
                 // Add to adapter
                 Log.d(TAG, "Media saved successfully, adding to adapter");
-                pendingMediaAdapter.addMedia(media);
+                targetAdapter.addMedia(media);
                 Toast.makeText(this, mediaType == Media.TYPE_IMAGE ? "Image added" : "Video added", Toast.LENGTH_SHORT).show();
             } else {
                 Log.e(TAG, "Failed to save media from URI");
                 Toast.makeText(this, "Error adding media: could not save file", Toast.LENGTH_SHORT).show();
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error handling media selection", e);
-            Toast.makeText(this, "Error adding media: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        }));
+        activeImports.add(importHolder.get());
     }
 
     @Override
-    public void onNoteEdit(Note note, int position) {
-        showAddEditNoteDialog(note, position);
+    public void onNoteEdit(NoteListItem item, int position) {
+        // The list only holds previews; the body is read when the note is opened
+        noteRepository.getNoteByIdAsync(item.getId(), note -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            if (note != null) {
+                showAddEditNoteDialog(note, position);
+            } else {
+                Toast.makeText(MainActivity.this, "Error loading note", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     @Override
-    public void onNoteDelete(Note note, int position) {
+    public void onNoteDelete(NoteListItem note, int position) {
         showDeleteConfirmationDialog(note, position);
     }
     
@@ -17,7 +17,8 @@ import java.util.UUID;
                 childColumns = "note_id",
                 onDelete = ForeignKey.CASCADE
         ),
-        indices = {@Index("note_id")})
+        // (note_id, timestamp) serves the foreign key and returns a note's media already sorted
+        indices = {@Index({"note_id", "timestamp"}), @Index("content_hash")})
 public class Media {
     
     public static final int TYPE_IMAGE = 1;
@@ -44,6 +45,11 @@ public class Media {
     @ColumnInfo(name = "timestamp")
     private long timestamp;
     
+    // SHA-256 of the file, naming its row in media_blobs; null for media stored before
+    // files were deduplicated, which own their file alone
+    @ColumnInfo(name = "content_hash")
+    private String contentHash;
+    
     public Media() {
         this.id = UUID.randomUUID().toString();
         this.timestamp = System.currentTimeMillis();
@@ -108,6 +114,14 @@ public class Media {
         this.timestamp = timestamp;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     @Override
     public String toString() {
         return "Media{" +
@@ -117,6 +131,7 @@ public class Media {
                 ", uri='" + uri + '\'' +
                 ", thumbnailUri='" + thumbnailUri + '\'' +
                 ", timestamp=" + timestamp +
+                ", contentHash='" + contentHash + '\'' +
                 '}';
     }
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package com.example.test;
 
 import android.content.Context;
-import android.net.Uri;
+import android.graphics.Bitmap;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -10,30 +10,47 @@ import android.widget.ImageButton;
 import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Future;
 
-public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.MediaViewHolder> {
+public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.MediaViewHolder> implements ThumbnailQueue.Listener {
     private static final String TAG = "MediaAdapter";
     
-    private List<Media> mediaList;
+    private final AsyncListDiffer<Media> differ;
     private Context context;
     private MediaListener mediaListener;
+    private final PreviewCache previewCache;
     
     public interface MediaListener {
         void onMediaClick(Media media, int position);
         void onMediaDelete(Media media, int position);
     }
     
+    static final DiffUtil.ItemCallback<Media> DIFF_CALLBACK = new DiffUtil.ItemCallback<Media>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Media oldItem, @NonNull Media newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull Media oldItem, @NonNull Media newItem) {
+            return oldItem.getType() == newItem.getType()
+                    && Objects.equals(oldItem.getUri(), newItem.getUri())
+                    && Objects.equals(oldItem.getThumbnailUri(), newItem.getThumbnailUri());
+        }
+    };
+    
     public MediaAdapter(Context context, MediaListener mediaListener) {
         this.context = context;
-        this.mediaList = new ArrayList<>();
+        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
         this.mediaListener = mediaListener;
+        this.previewCache = PreviewCache.getInstance(context);
     }
     
     public void setMediaListener(MediaListener mediaListener) {
@@ -49,33 +66,74 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.MediaViewHol
     
     @Override
     public void onBindViewHolder(@NonNull MediaViewHolder holder, int position) {
-        Media media = mediaList.get(position);
-        holder.bind(media, position);
+        Media media = differ.getCurrentList().get(position);
+        holder.bind(media, mediaListener);
     }
     
     @Override
     public int getItemCount() {
-        return mediaList.size();
+        return differ.getCurrentList().size();
     }
     
+    // Lists are diffed by media id on a background thread, so only changed tiles rebind
     public void setMediaList(List<Media> mediaList) {
-        this.mediaList.clear();
-        if (mediaList != null) {
-            this.mediaList.addAll(mediaList);
+        differ.submitList(mediaList != null ? new ArrayList<>(mediaList) : new ArrayList<>());
+    }
+    
+    // Listen for background thumbnails only while the list is on screen
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        ThumbnailQueue.getInstance(context).addListener(this);
+    }
+    
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        ThumbnailQueue.getInstance(context).removeListener(this);
+    }
+    
+    // Swaps in the media with its new thumbnail; the differ rebinds just that tile
+    @Override
+    public void onThumbnailReady(Media media) {
+        List<Media> updated = new ArrayList<>(differ.getCurrentList());
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).getId().equals(media.getId())) {
+                updated.set(i, media);
+                differ.submitList(updated);
+                return;
+            }
         }
-        notifyDataSetChanged();
     }
     
     public void addMedia(Media media) {
-        mediaList.add(media);
-        notifyItemInserted(mediaList.size() - 1);
+        List<Media> updated = new ArrayList<>(differ.getCurrentList());
+        updated.add(media);
+        differ.submitList(updated);
+    }
+    
+    public void addMedia(List<Media> mediaList) {
+        List<Media> updated = new ArrayList<>(differ.getCurrentList());
+        updated.addAll(mediaList);
+        differ.submitList(updated);
     }
     
     public void removeMedia(int position) {
-        if (position >= 0 && position < mediaList.size()) {
-            mediaList.remove(position);
-            notifyItemRemoved(position);
-            notifyItemRangeChanged(position, mediaList.size() - position);
+        List<Media> updated = new ArrayList<>(differ.getCurrentList());
+        if (position >= 0 && position < updated.size()) {
+            updated.remove(position);
+            differ.submitList(updated);
+        }
+    }
+    
+    public void removeMedia(Media media) {
+        List<Media> updated = new ArrayList<>(differ.getCurrentList());
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).getId().equals(media.getId())) {
+                updated.remove(i);
+                differ.submitList(updated);
+                return;
+            }
         }
     }
     
@@ -84,6 +142,9 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.MediaViewHol
         private ImageView videoPlayIcon;
         private ImageButton deleteMediaButton;
         
+        private Future<Bitmap> pendingLoad;
+        private String boundMediaId;
+        
         public MediaViewHolder(@NonNull View itemView) {
             super(itemView);
             mediaImageView = itemView.findViewById(R.id.mediaImageView);
@@ -91,60 +152,56 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.MediaViewHol
             deleteMediaButton = itemView.findViewById(R.id.deleteMediaButton);
         }
         
-        public void bind(final Media media, final int position) {
+        // Holders move between the media adapters of different note cards through a shared
+        // pool, so the listener comes from the adapter binding the holder, not the one that
+        // created it
+        public void bind(final Media media, final MediaListener mediaListener) {
             try {
-                Log.d(TAG, "Binding media at position " + position + ": " + media.toString());
-                File mediaFile;
+                Log.d(TAG, "Binding media at position " + getBindingAdapterPosition() + ": " + media.toString());
+                videoPlayIcon.setVisibility(media.getType() == Media.TYPE_VIDEO ? View.VISIBLE : View.GONE);
+                mediaImageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
                 
-                if (media.getType() == Media.TYPE_IMAGE) {
-                    // Load image
-                    mediaFile = new File(media.getUri());
-                    Log.d(TAG, "Loading image from: " + mediaFile.getAbsolutePath());
-                    videoPlayIcon.setVisibility(View.GONE);
-                } else {
-                    // Load video thumbnail
-                    if (media.getThumbnailUri() != null) {
-                        mediaFile = new File(media.getThumbnailUri());
-                        Log.d(TAG, "Loading video thumbnail from: " + mediaFile.getAbsolutePath());
-                    } else {
-                        mediaFile = new File(media.getUri());
-                        Log.d(TAG, "Loading video from: " + mediaFile.getAbsolutePath());
-                    }
-                    videoPlayIcon.setVisibility(View.VISIBLE);
+                // A load still running for the media this holder showed before is not needed
+                if (pendingLoad != null) {
+                    pendingLoad.cancel(false);
+                    pendingLoad = null;
                 }
+                boundMediaId = media.getId();
                 
-                if (mediaFile.exists()) {
-                    Log.d(TAG, "Media file exists, loading with Glide");
-                    Uri contentUri = Uri.fromFile(mediaFile);
-                    
-                    // Use try-catch to handle Glide errors
-                    try {
-                        Glide.with(context)
-                                .load(contentUri)
-                                .centerCrop()
-                                .into(mediaImageView);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error loading media with Glide", e);
-                        // Load a placeholder or show error indicator
-                        mediaImageView.setImageResource(android.R.drawable.ic_menu_report_image);
-                    }
+                Bitmap preview = previewCache.getFromMemory(media);
+                if (preview != null) {
+                    mediaImageView.setImageBitmap(preview);
                 } else {
-                    Log.e(TAG, "Media file does not exist: " + mediaFile.getAbsolutePath());
-                    // Load a placeholder
-                    Glide.with(context)
-                            .load(android.R.drawable.ic_menu_gallery)
-                            .centerCrop()
-                            .into(mediaImageView);
+                    mediaImageView.setImageResource(android.R.drawable.ic_menu_gallery);
+                    pendingLoad = previewCache.load(media, bitmap -> {
+                        if (!media.getId().equals(boundMediaId)) {
+                            return;
+                        }
+                        pendingLoad = null;
+                        if (bitmap != null) {
+                            mediaImageView.setImageBitmap(bitmap);
+                        } else {
+                            mediaImageView.setImageResource(android.R.drawable.ic_menu_report_image);
+                        }
+                    });
                 }
                 
                 // Set click listeners
                 itemView.setOnClickListener(v -> {
+                    int position = getBindingAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
                     if (mediaListener != null) {
                         mediaListener.onMediaClick(media, position);
                     }
                 });
                 
                 deleteMediaButton.setOnClickListener(v -> {
+                    int position = getBindingAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
                     if (mediaListener != null) {
                         mediaListener.onMediaDelete(media, position);
                     }
@@ -0,0 +1,68 @@
+package com.example.test;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// A stored media file, named after the SHA-256 of its content. Media rows point at a blob
+// through media.content_hash, and ref_count is the number of such rows; it is kept up to
+// date by triggers on the media table (see NoteDatabase), so cascaded deletes count too.
+@Entity(tableName = "media_blobs")
+public class MediaBlob {
+    
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "hash")
+    private String hash;
+    
+    @NonNull
+    @ColumnInfo(name = "path")
+    private String path;
+    
+    @ColumnInfo(name = "size")
+    private long size;
+    
+    @ColumnInfo(name = "ref_count")
+    private int refCount;
+    
+    public MediaBlob(@NonNull String hash, @NonNull String path, long size) {
+        this.hash = hash;
+        this.path = path;
+        this.size = size;
+    }
+    
+    @NonNull
+    public String getHash() {
+        return hash;
+    }
+    
+    public void setHash(@NonNull String hash) {
+        this.hash = hash;
+    }
+    
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+    
+    public void setPath(@NonNull String path) {
+        this.path = path;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public void setSize(long size) {
+        this.size = size;
+    }
+    
+    public int getRefCount() {
+        return refCount;
+    }
+    
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+}
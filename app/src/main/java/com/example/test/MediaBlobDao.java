@@ -0,0 +1,29 @@
+package com.example.test;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface MediaBlobDao {
+    
+    // New blobs start with ref_count 0; inserting the media row that uses it counts it
+    @Insert(onConflict = OnConflictStrategy.ABORT)
+    void insert(MediaBlob blob);
+    
+    @Query("SELECT * FROM media_blobs WHERE hash = :hash")
+    MediaBlob getBlob(String hash);
+    
+    // Blobs left without references, e.g. after a note delete cascaded to its media
+    @Query("SELECT * FROM media_blobs WHERE ref_count <= 0 LIMIT :limit")
+    List<MediaBlob> getUnreferencedBlobs(int limit);
+    
+    @Query("SELECT path FROM media_blobs WHERE path IN (:paths)")
+    List<String> getReferencedPaths(List<String> paths);
+    
+    @Query("DELETE FROM media_blobs WHERE hash = :hash AND ref_count <= 0")
+    int deleteIfUnreferenced(String hash);
+}
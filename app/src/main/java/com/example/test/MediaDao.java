@@ -6,21 +6,43 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import java.util.List;
 
 @Dao
 public interface MediaDao {
     
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // For new rows only; an existing id fails. REPLACE would delete the old row without
+    // firing media_blobs_ref_AFTER_DELETE (recursive_triggers is off), so its blob would
+    // keep a reference that no row holds. Saves of media that may exist go through upsert.
+    @Insert(onConflict = OnConflictStrategy.ABORT)
     void insert(Media media);
     
+    // Room runs a list insert in a single transaction
+    @Insert(onConflict = OnConflictStrategy.ABORT)
+    void insert(List<Media> mediaList);
+    
+    // Inserts new rows and updates existing ones in place, so the ref_count triggers see
+    // an insert or an update of content_hash, never a silent delete
+    @Upsert
+    void upsert(Media media);
+    
+    @Upsert
+    void upsert(List<Media> mediaList);
+    
     @Update
     void update(Media media);
     
+    @Update
+    void update(List<Media> mediaList);
+    
     @Delete
     void delete(Media media);
     
+    @Delete
+    void delete(List<Media> mediaList);
+    
     @Query("DELETE FROM media WHERE id = :mediaId")
     void deleteById(String mediaId);
     
@@ -30,6 +52,42 @@ public interface MediaDao {
     @Query("SELECT * FROM media WHERE note_id = :noteId ORDER BY timestamp ASC")
     List<Media> getMediaForNote(String noteId);
     
+    // The newest limit media of a note, read backwards from index_media_note_id_timestamp
+    @Query("SELECT * FROM media WHERE note_id = :noteId ORDER BY timestamp DESC LIMIT :limit")
+    List<Media> getLatestMediaForNote(String noteId, int limit);
+    
+    @Query("SELECT * FROM media WHERE note_id = :noteId AND timestamp >= :from AND timestamp < :to " +
+            "ORDER BY timestamp ASC")
+    List<Media> getMediaForNoteBetween(String noteId, long from, long to);
+    
+    // The first limit media of each of several notes, the tiles the note cards show, with
+    // each note's total count, in one query; callers group the rows by note_id. The query
+    // is driven from the note ids: for each note, the subquery takes the rowids of its first
+    // limit entries of index_media_note_id_timestamp, and only those rows are read from the
+    // table. The count walks the note's index entries but never the table. Window functions
+    // would do this more simply but need SQLite 3.25, newer than what minSdk 24 ships.
+    @Query("SELECT media.*, (SELECT COUNT(*) FROM media AS c WHERE c.note_id = notes.id) AS media_count " +
+            "FROM notes JOIN media ON media.rowid IN " +
+            "(SELECT m.rowid FROM media AS m WHERE m.note_id = notes.id ORDER BY m.timestamp ASC LIMIT :limit) " +
+            "WHERE notes.id IN (:noteIds) " +
+            "ORDER BY notes.id, media.timestamp ASC")
+    List<MediaPreview> getPreviewMediaForNotes(List<String> noteIds, int limit);
+    
+    // Rows still waiting for ThumbnailQueue, oldest first
+    @Query("SELECT * FROM media WHERE thumbnail_uri IS NULL ORDER BY timestamp ASC")
+    List<Media> getMediaWithoutThumbnail();
+    
+    // Returns the number of rows updated, 0 if the media was deleted in the meantime
+    @Query("UPDATE media SET thumbnail_uri = :thumbnailUri WHERE id = :mediaId")
+    int setThumbnailUri(String mediaId, String thumbnailUri);
+    
+    // Which of the given file paths are still used, for MediaGarbageCollector
+    @Query("SELECT uri FROM media WHERE uri IN (:paths)")
+    List<String> getReferencedUris(List<String> paths);
+    
+    @Query("SELECT thumbnail_uri FROM media WHERE thumbnail_uri IN (:paths)")
+    List<String> getReferencedThumbnailUris(List<String> paths);
+    
     @Query("SELECT * FROM media WHERE id = :mediaId")
     Media getMediaById(String mediaId);
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.example.test;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Removes media files that nothing references any more: blobs whose last media row went
+// away through a cascading note delete, and files in files/media and files/thumbnails
+// that no media or blob row points at (failed deletes, crashed imports). The work is cut
+// into slices of at most SLICE_BUDGET_MS with pauses in between, so a large backlog never
+// holds the database for long. Files younger than GRACE_PERIOD_MS are left alone because
+// an import may still be about to reference them.
+public class MediaGarbageCollector {
+    private static final String TAG = "MediaGarbageCollector";
+
+    private static final long SLICE_BUDGET_MS = 50;
+    private static final long SLICE_PAUSE_MS = 200;
+    private static final long START_DELAY_MS = 10_000;
+    private static final long GRACE_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int BATCH_SIZE = 100;
+
+    private static final String PREFS_NAME = "media_gc";
+    private static final String KEY_BYTES_RECLAIMED = "bytes_reclaimed";
+    private static final String KEY_FILES_RECLAIMED = "files_reclaimed";
+
+    private static volatile MediaGarbageCollector INSTANCE;
+
+    private final NoteDatabase database;
+    private final MediaDao mediaDao;
+    private final MediaBlobDao mediaBlobDao;
+    private final SharedPreferences preferences;
+    private final File mediaDirectory;
+    private final File thumbnailDirectory;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean rerunRequested = new AtomicBoolean();
+
+    // State of the current run, only touched on the scheduler thread
+    private final List<File> candidates = new ArrayList<>();
+    private int nextCandidate;
+    private long runBytes;
+    private int runFiles;
+
+    private MediaGarbageCollector(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.database = NoteDatabase.getDatabase(appContext);
+        this.mediaDao = database.mediaDao();
+        this.mediaBlobDao = database.mediaBlobDao();
+        this.preferences = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.mediaDirectory = new File(appContext.getFilesDir(), "media");
+        this.thumbnailDirectory = new File(appContext.getFilesDir(), "thumbnails");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "media-gc");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static MediaGarbageCollector getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (MediaGarbageCollector.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new MediaGarbageCollector(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Starts a run after a short delay; a request during a run starts another one after it
+    public void requestRun() {
+        if (!running.compareAndSet(false, true)) {
+            rerunRequested.set(true);
+            return;
+        }
+        scheduler.schedule(this::startRun, START_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Total bytes freed by all runs so far
+    public long getBytesReclaimed() {
+        return preferences.getLong(KEY_BYTES_RECLAIMED, 0);
+    }
+
+    public long getFilesReclaimed() {
+        return preferences.getLong(KEY_FILES_RECLAIMED, 0);
+    }
+
+    private void startRun() {
+        runBytes = 0;
+        runFiles = 0;
+        nextCandidate = 0;
+        candidates.clear();
+        addCandidates(mediaDirectory);
+        addCandidates(thumbnailDirectory);
+        Log.d(TAG, "Starting run with " + candidates.size() + " files to check");
+        scheduler.execute(this::collectUnreferencedBlobs);
+    }
+
+    private void addCandidates(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - GRACE_PERIOD_MS;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < cutoff) {
+                candidates.add(file);
+            }
+        }
+    }
+
+    // Phase 1: blobs whose ref_count dropped to zero without MediaRepository.delete
+    private void collectUnreferencedBlobs() {
+        try {
+            long deadline = SystemClock.uptimeMillis() + SLICE_BUDGET_MS;
+            while (SystemClock.uptimeMillis() < deadline) {
+                List<MediaBlob> blobs = mediaBlobDao.getUnreferencedBlobs(BATCH_SIZE);
+                if (blobs.isEmpty()) {
+                    scheduler.execute(this::collectOrphanedFiles);
+                    return;
+                }
+                database.runInTransaction(() -> {
+                    for (MediaBlob blob : blobs) {
+                        // Checked again in the transaction, an import may have reused it
+                        if (mediaBlobDao.deleteIfUnreferenced(blob.getHash()) > 0) {
+                            reclaim(new File(blob.getPath()));
+                        }
+                    }
+                });
+            }
+            scheduler.schedule(this::collectUnreferencedBlobs, SLICE_PAUSE_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.e(TAG, "Error collecting unreferenced blobs", e);
+            finishRun();
+        }
+    }
+
+    // Phase 2: files no row points at, checked one batch of paths per query
+    private void collectOrphanedFiles() {
+        try {
+            long deadline = SystemClock.uptimeMillis() + SLICE_BUDGET_MS;
+            while (nextCandidate < candidates.size() && SystemClock.uptimeMillis() < deadline) {
+                int end = Math.min(nextCandidate + BATCH_SIZE, candidates.size());
+                List<File> batch = candidates.subList(nextCandidate, end);
+                nextCandidate = end;
+
+                List<String> paths = new ArrayList<>(batch.size());
+                for (File file : batch) {
+                    paths.add(file.getAbsolutePath());
+                }
+
+                // The check and the delete share a transaction, so no import can start
+                // referencing a file in between
+                database.runInTransaction(() -> {
+                    Set<String> referenced = new HashSet<>(mediaDao.getReferencedUris(paths));
+                    referenced.addAll(mediaDao.getReferencedThumbnailUris(paths));
+                    referenced.addAll(mediaBlobDao.getReferencedPaths(paths));
+                    for (File file : batch) {
+                        if (!referenced.contains(file.getAbsolutePath())) {
+                            reclaim(file);
+                        }
+                    }
+                });
+            }
+
+            if (nextCandidate < candidates.size()) {
+                scheduler.schedule(this::collectOrphanedFiles, SLICE_PAUSE_MS, TimeUnit.MILLISECONDS);
+            } else {
+                finishRun();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error collecting orphaned files", e);
+            finishRun();
+        }
+    }
+
+    private void reclaim(File file) {
+        long length = file.length();
+        if (file.delete()) {
+            runBytes += length;
+            runFiles++;
+            Log.d(TAG, "Deleted orphaned file " + file.getName() + " (" + length + " bytes)");
+        }
+    }
+
+    private void finishRun() {
+        candidates.clear();
+        preferences.edit()
+                .putLong(KEY_BYTES_RECLAIMED, getBytesReclaimed() + runBytes)
+                .putLong(KEY_FILES_RECLAIMED, getFilesReclaimed() + runFiles)
+                .apply();
+        Log.d(TAG, "Run finished: reclaimed " + runBytes + " bytes in " + runFiles + " files, "
+                + getBytesReclaimed() + " bytes in total");
+
+        running.set(false);
+        if (rerunRequested.getAndSet(false)) {
+            requestRun();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.test;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+// One of the first media of a note, as shown on its card, together with the number of
+// media the note has in total. Loaded by MediaDao.getPreviewMediaForNotes.
+public class MediaPreview {
+
+    @Embedded
+    private Media media;
+
+    @ColumnInfo(name = "media_count")
+    private int mediaCount;
+
+    public Media getMedia() {
+        return media;
+    }
+
+    public void setMedia(Media media) {
+        this.media = media;
+    }
+
+    public int getMediaCount() {
+        return mediaCount;
+    }
+
+    public void setMediaCount(int mediaCount) {
+        this.mediaCount = mediaCount;
+    }
+}
@@ -3,35 +3,74 @@ package com.example.test;
 import android.app.Application;
 import android.content.ContentResolver;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.media.ThumbnailUtils;
 import android.net.Uri;
-import android.provider.MediaStore;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
-import android.util.Size;
 
 import androidx.core.content.FileProvider;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MediaRepository {
     private static final String TAG = "MediaRepository";
     
+    // Stay below SQLite's default limit of 999 bound parameters per statement
+    private static final int MAX_QUERY_PARAMS = 900;
+    
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    
+    // Dedicated executor for file copies, so large imports never hold up database work.
+    // Bounded so a batch of many files doesn't saturate storage with concurrent writes.
+    private static final int IO_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final AtomicInteger ioThreadCount = new AtomicInteger();
+    static final ExecutorService mediaIoExecutor = Executors.newFixedThreadPool(IO_THREADS, runnable ->
+            new Thread(runnable, "media-io-" + ioThreadCount.incrementAndGet()));
+    
+    // Receives the number of bytes copied so far; total is -1 when the size is unknown
+    public interface ProgressListener {
+        void onProgress(long bytesCopied, long totalBytes);
+    }
+    
+    private NoteDatabase database;
     private MediaDao mediaDao;
+    private MediaBlobDao mediaBlobDao;
     private Application application;
     
     public MediaRepository(Application application) {
-        NoteDatabase database = NoteDatabase.getDatabase(application);
+        database = NoteDatabase.getDatabase(application);
         mediaDao = database.mediaDao();
+        mediaBlobDao = database.mediaBlobDao();
         this.application = application;
     }
     
@@ -50,8 +89,8 @@ public class MediaRepository {
                 return false;
             }
             
-            // Insert into database
-            mediaDao.insert(media);
+            // Insert into database, or update the row if the media is already stored
+            mediaDao.upsert(media);
             Log.d(TAG, "Media inserted successfully with ID: " + media.getId());
             return true;
         } catch (Exception e) {
@@ -60,6 +99,26 @@ public class MediaRepository {
         }
     }
     
+    // Inserts all rows in one transaction; either every row is written or none is
+    public boolean insert(List<Media> mediaList) {
+        try {
+            for (Media media : mediaList) {
+                if (media.getNoteId() == null || media.getNoteId().isEmpty()
+                        || media.getUri() == null || media.getUri().isEmpty()) {
+                    Log.e(TAG, "Cannot insert media batch: invalid media " + media);
+                    return false;
+                }
+            }
+            
+            mediaDao.upsert(mediaList);
+            Log.d(TAG, "Inserted " + mediaList.size() + " media items");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error inserting media batch", e);
+            return false;
+        }
+    }
+    
     public void update(Media media) {
         try {
             Log.d(TAG, "Updating media: " + media.getId());
@@ -69,46 +128,77 @@ public class MediaRepository {
         }
     }
     
+    public void update(List<Media> mediaList) {
+        try {
+            Log.d(TAG, "Updating " + mediaList.size() + " media items");
+            mediaDao.update(mediaList);
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating media", e);
+        }
+    }
+    
     public boolean delete(Media media) {
+        return delete(Collections.singletonList(media));
+    }
+    
+    // Deletes all rows in one transaction. The delete trigger drops each blob's ref_count,
+    // and a blob file goes only with its last reference. Files are deleted only once the
+    // transaction has committed, so a rollback never leaves rows pointing at missing files;
+    // if the app dies in between, MediaGarbageCollector removes the orphaned files. Writes
+    // run one at a time on the writer thread, so an import of the same content can't store
+    // it again before the old file is gone.
+    public boolean delete(List<Media> mediaList) {
+        List<File> files = new ArrayList<>();
         try {
-            Log.d(TAG, "Deleting media: " + media.getId());
+            Log.d(TAG, "Deleting " + mediaList.size() + " media items");
             
-            // Delete the actual file
-            if (media.getUri() != null) {
-                File mediaFile = new File(media.getUri());
-                if (mediaFile.exists()) {
-                    mediaFile.delete();
+            database.runInTransaction(() -> {
+                files.clear();
+                mediaDao.delete(mediaList);
+                
+                Set<String> hashes = new HashSet<>();
+                for (Media media : mediaList) {
+                    // Thumbnails are never shared
+                    if (media.getThumbnailUri() != null) {
+                        files.add(new File(media.getThumbnailUri()));
+                    }
+                    if (media.getContentHash() != null) {
+                        hashes.add(media.getContentHash());
+                    } else if (media.getUri() != null) {
+                        // Stored before deduplication, so this media owns its file
+                        files.add(new File(media.getUri()));
+                    }
                 }
-            }
-            
-            // Delete the thumbnail file if it exists
-            if (media.getThumbnailUri() != null) {
-                File thumbnailFile = new File(media.getThumbnailUri());
-                if (thumbnailFile.exists()) {
-                    thumbnailFile.delete();
+                for (String hash : hashes) {
+                    MediaBlob blob = mediaBlobDao.getBlob(hash);
+                    if (blob != null && mediaBlobDao.deleteIfUnreferenced(hash) > 0) {
+                        Log.d(TAG, "Last reference gone, deleting blob " + hash);
+                        files.add(new File(blob.getPath()));
+                    }
                 }
-            }
-            
-            // Delete from database
-            mediaDao.deleteById(media.getId());
+            });
             Log.d(TAG, "Media deleted successfully from database");
-            return true;
         } catch (Exception e) {
             Log.e(TAG, "Error deleting media", e);
             return false;
         }
+        
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                Log.e(TAG, "Could not delete " + file + ", left for the garbage collector");
+            }
+        }
+        return true;
     }
     
     public void deleteAllMediaForNote(String noteId) {
         try {
             Log.d(TAG, "Deleting all media for note: " + noteId);
             
-            // Get all media for the note
+            // Get all media for the note and delete them together
             List<Media> mediaList = getMediaForNote(noteId);
-            
-            // Delete each media file
-            for (Media media : mediaList) {
-                delete(media);
+            if (mediaList != null && !mediaList.isEmpty()) {
+                delete(mediaList);
             }
             
             // Delete all from database
@@ -129,6 +219,41 @@ public class MediaRepository {
         }
     }
     
+    // The newest media of a note, newest first
+    public List<Media> getLatestMediaForNote(String noteId, int limit) {
+        try {
+            return mediaDao.getLatestMediaForNote(noteId, limit);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting latest media for note", e);
+            return null;
+        }
+    }
+    
+    // Loads the first limit media of many notes, each with the note's media count, with
+    // one query per 900 ids instead of one per note. Notes without media have no entry in
+    // the returned map.
+    public Map<String, List<MediaPreview>> getPreviewMediaForNotes(List<String> noteIds, int limit) {
+        Map<String, List<MediaPreview>> mediaByNote = new HashMap<>();
+        try {
+            for (int start = 0; start < noteIds.size(); start += MAX_QUERY_PARAMS) {
+                List<String> chunk = noteIds.subList(start, Math.min(start + MAX_QUERY_PARAMS, noteIds.size()));
+                for (MediaPreview preview : mediaDao.getPreviewMediaForNotes(chunk, limit)) {
+                    String noteId = preview.getMedia().getNoteId();
+                    List<MediaPreview> previews = mediaByNote.get(noteId);
+                    if (previews == null) {
+                        previews = new ArrayList<>();
+                        mediaByNote.put(noteId, previews);
+                    }
+                    previews.add(preview);
+                }
+            }
+            Log.d(TAG, "Retrieved media for " + mediaByNote.size() + " of " + noteIds.size() + " notes");
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting media for notes", e);
+        }
+        return mediaByNote;
+    }
+    
     public Media getMediaById(String mediaId) {
         try {
             Media media = mediaDao.getMediaById(mediaId);
@@ -140,8 +265,284 @@ public class MediaRepository {
         }
     }
     
+    // Asynchronous API: each call runs the synchronous method on the database executor
+    // and reports its result on the main thread. Writes go to the single writer thread,
+    // reads to the read pool
+    
+    public Future<Boolean> insertAsync(Media media, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> insert(media), callback);
+    }
+    
+    public Future<Void> updateAsync(Media media, RepositoryCallback<Void> callback) {
+        return NoteDatabase.executeWrite(() -> {
+            update(media);
+            return null;
+        }, callback);
+    }
+    
+    public Future<Boolean> deleteAsync(Media media, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> delete(media), callback);
+    }
+    
+    public Future<Boolean> insertAsync(List<Media> mediaList, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> insert(mediaList), callback);
+    }
+    
+    public Future<Void> updateAsync(List<Media> mediaList, RepositoryCallback<Void> callback) {
+        return NoteDatabase.executeWrite(() -> {
+            update(mediaList);
+            return null;
+        }, callback);
+    }
+    
+    public Future<Boolean> deleteAsync(List<Media> mediaList, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> delete(mediaList), callback);
+    }
+    
+    public Future<Void> deleteAllMediaForNoteAsync(String noteId, RepositoryCallback<Void> callback) {
+        return NoteDatabase.executeWrite(() -> {
+            deleteAllMediaForNote(noteId);
+            return null;
+        }, callback);
+    }
+    
+    public Future<List<Media>> getMediaForNoteAsync(String noteId, RepositoryCallback<List<Media>> callback) {
+        return NoteDatabase.executeAsync(() -> getMediaForNote(noteId), callback);
+    }
+    
+    public Future<List<Media>> getLatestMediaForNoteAsync(String noteId, int limit, RepositoryCallback<List<Media>> callback) {
+        return NoteDatabase.executeAsync(() -> getLatestMediaForNote(noteId, limit), callback);
+    }
+    
+    public Future<Map<String, List<MediaPreview>>> getPreviewMediaForNotesAsync(List<String> noteIds, int limit,
+                                                                               RepositoryCallback<Map<String, List<MediaPreview>>> callback) {
+        return NoteDatabase.executeAsync(() -> getPreviewMediaForNotes(noteIds, limit), callback);
+    }
+    
+    public Future<Media> getMediaByIdAsync(String mediaId, RepositoryCallback<Media> callback) {
+        return NoteDatabase.executeAsync(() -> getMediaById(mediaId), callback);
+    }
+    
+    // Imports a media file on the media I/O executor. Progress is reported on the main
+    // thread; cancel the returned Future with cancel(true) to stop the copy, in which case
+    // the partial file is deleted and the callback is not called.
+    public Future<Media> importMediaAsync(Context context, Uri sourceUri, String noteId, int mediaType,
+                                          ProgressListener progressListener, RepositoryCallback<Media> callback) {
+        Context appContext = context.getApplicationContext();
+        ProgressListener mainThreadListener = progressListener == null ? null
+                : (copied, total) -> NoteDatabase.runOnMainThread(() -> progressListener.onProgress(copied, total));
+        return NoteDatabase.executeAsync(mediaIoExecutor,
+                () -> saveMediaFromUri(appContext, sourceUri, noteId, mediaType, mainThreadListener), callback);
+    }
+    
+    public Future<Media> saveMediaFromUriAsync(Context context, Uri sourceUri, String noteId, int mediaType,
+                                               RepositoryCallback<Media> callback) {
+        return importMediaAsync(context, sourceUri, noteId, mediaType, null, callback);
+    }
+    
     // Save a media file from a Uri to the app's private storage
     public Media saveMediaFromUri(Context context, Uri sourceUri, String noteId, int mediaType) {
+        return saveMediaFromUri(context, sourceUri, noteId, mediaType, null);
+    }
+    
+    public Media saveMediaFromUri(Context context, Uri sourceUri, String noteId, int mediaType,
+                                  ProgressListener progressListener) {
+        Media media = copyMediaFromUri(context, sourceUri, noteId, mediaType, progressListener);
+        if (media == null) {
+            return null;
+        }
+        
+        // Insert the media into the database
+        Log.d(TAG, "Inserting media into database");
+        if (insertImportedOnWriter(Collections.singletonList(media))) {
+            Log.d(TAG, "Successfully inserted media into database");
+            if (media.getType() == Media.TYPE_VIDEO) {
+                ThumbnailQueue.getInstance(context).enqueue(media);
+            }
+            return media;
+        } else {
+            Log.e(TAG, "Failed to insert media into database");
+            return null;
+        }
+    }
+    
+    // Imports several Uris at once. Files are copied and thumbnailed in parallel on the media
+    // I/O executor, then all rows are written with one bulk insert, so the batch takes about
+    // as long as its slowest files rather than the sum of all of them. Uris that fail to
+    // copy are skipped; if the insert fails, every copied file is removed again.
+    // Meant to run on the media I/O executor itself: a copy that no pool thread has
+    // started yet is run by the calling thread, so waiting for the copies can't starve
+    // the pool, whatever the number of batches running at once.
+    public List<Media> importMediaBatch(Context context, List<Uri> sourceUris, String noteId, int mediaType) {
+        Log.d(TAG, "Importing batch of " + sourceUris.size() + " media items for note: " + noteId);
+        Context appContext = context.getApplicationContext();
+        
+        List<FutureTask<Media>> copies = new ArrayList<>();
+        for (Uri sourceUri : sourceUris) {
+            FutureTask<Media> copy = new FutureTask<>(() -> copyMediaFromUri(appContext, sourceUri, noteId, mediaType, null));
+            copies.add(copy);
+            mediaIoExecutor.execute(copy);
+        }
+        
+        List<Media> imported = new ArrayList<>();
+        for (FutureTask<Media> copy : copies) {
+            try {
+                // Does nothing if a pool thread has already started or finished the copy
+                if (!Thread.currentThread().isInterrupted()) {
+                    copy.run();
+                }
+                Media media = copy.get();
+                if (media != null) {
+                    imported.add(media);
+                }
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Unexpected error in batch import", e);
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Batch import cancelled");
+                discardBatch(copies);
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        
+        if (imported.isEmpty()) {
+            return imported;
+        }
+        
+        if (!insertImportedOnWriter(imported)) {
+            return null;
+        }
+        for (Media media : imported) {
+            if (media.getType() == Media.TYPE_VIDEO) {
+                ThumbnailQueue.getInstance(appContext).enqueue(media);
+            }
+        }
+        Log.d(TAG, "Imported " + imported.size() + " of " + sourceUris.size() + " media items");
+        return imported;
+    }
+    
+    // Runs insertImported on the single writer thread and waits for it. Callers run on the
+    // media I/O executor, never on the writer. A cancelled import still waits: the insert
+    // is already queued, and the caller must not report files it then removes.
+    private boolean insertImportedOnWriter(List<Media> mediaList) {
+        Future<Boolean> insert = NoteDatabase.executeWrite(() -> insertImported(mediaList), null);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return insert.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Error inserting imported media", e);
+            return false;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    // Moves freshly copied files into the content-addressed store and inserts their rows in
+    // one transaction. A copy whose content is already stored is dropped, and its media
+    // points at the existing file instead. If anything fails, the copies, the blobs created
+    // here and the thumbnails are all removed and no row is left behind.
+    private boolean insertImported(List<Media> mediaList) {
+        List<File> copies = new ArrayList<>();
+        for (Media media : mediaList) {
+            copies.add(new File(media.getUri()));
+        }
+        List<File> createdBlobs = new ArrayList<>();
+        
+        try {
+            database.runInTransaction(() -> {
+                createdBlobs.clear();
+                for (int i = 0; i < mediaList.size(); i++) {
+                    Media media = mediaList.get(i);
+                    File copy = copies.get(i);
+                    String hash = media.getContentHash();
+                    
+                    MediaBlob blob = mediaBlobDao.getBlob(hash);
+                    if (blob == null) {
+                        File blobFile = createBlobFile(hash, media.getType());
+                        if (!copy.renameTo(blobFile)) {
+                            throw new IllegalStateException("Cannot move " + copy + " to " + blobFile);
+                        }
+                        createdBlobs.add(blobFile);
+                        blob = new MediaBlob(hash, blobFile.getAbsolutePath(), blobFile.length());
+                        mediaBlobDao.insert(blob);
+                        Log.d(TAG, "Stored new blob " + hash);
+                    } else if (!new File(blob.getPath()).exists()) {
+                        // The stored file went missing; this copy takes its place
+                        if (!copy.renameTo(new File(blob.getPath()))) {
+                            throw new IllegalStateException("Cannot restore blob " + blob.getPath());
+                        }
+                    } else {
+                        Log.d(TAG, "Content already stored as blob " + hash + ", sharing it");
+                    }
+                    media.setUri(blob.getPath());
+                }
+                // The insert trigger counts each row against its blob
+                mediaDao.insert(mediaList);
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error inserting imported media", e);
+            for (File file : createdBlobs) {
+                file.delete();
+            }
+            for (File copy : copies) {
+                copy.delete();
+            }
+            for (Media media : mediaList) {
+                if (media.getThumbnailUri() != null) {
+                    new File(media.getThumbnailUri()).delete();
+                }
+            }
+            return false;
+        }
+        
+        // Copies of content that was already stored are no longer needed
+        for (File copy : copies) {
+            if (copy.exists()) {
+                copy.delete();
+            }
+        }
+        return true;
+    }
+    
+    // Stops copies still running and removes the files of those that already finished
+    private void discardBatch(List<FutureTask<Media>> copies) {
+        for (FutureTask<Media> copy : copies) {
+            if (copy.cancel(true)) {
+                continue;
+            }
+            try {
+                Media media = copy.get();
+                if (media != null) {
+                    deleteMediaFiles(media);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error discarding batch import", e);
+            }
+        }
+    }
+    
+    // Runs importMediaBatch on the media I/O executor and reports the inserted media on the
+    // main thread, or null if the batch could not be saved. The database read pool is not
+    // involved; the rows are written by the single writer thread.
+    public Future<List<Media>> importMediaBatchAsync(Context context, List<Uri> sourceUris, String noteId,
+                                                     int mediaType, RepositoryCallback<List<Media>> callback) {
+        return NoteDatabase.executeAsync(mediaIoExecutor,
+                () -> importMediaBatch(context, sourceUris, noteId, mediaType), callback);
+    }
+    
+    // Copies the Uri into app storage and creates a thumbnail for videos. Returns the Media
+    // ready to be inserted, or null on failure or cancellation; nothing is written to the
+    // database here.
+    private Media copyMediaFromUri(Context context, Uri sourceUri, String noteId, int mediaType,
+                                   ProgressListener progressListener) {
         Log.d(TAG, "Saving media from Uri: " + sourceUri + ", noteId: " + noteId + ", mediaType: " + mediaType);
         
         try {
@@ -154,27 +555,20 @@ public class MediaRepository {
             Log.d(TAG, "Created media file: " + mediaFile.getAbsolutePath());
             
             // Copy the content from the source Uri to our file
-            try (InputStream in = contentResolver.openInputStream(sourceUri);
-                 OutputStream out = new FileOutputStream(mediaFile)) {
-                
-                if (in == null) {
-                    Log.e(TAG, "Failed to open input stream for Uri: " + sourceUri);
-                    return null;
-                }
-                
-                byte[] buffer = new byte[4096]; // Increased buffer size for better performance
-                int length;
-                long totalBytes = 0;
-                
-                while ((length = in.read(buffer)) > 0) {
-                    out.write(buffer, 0, length);
-                    totalBytes += length;
-                }
-                out.flush();
-                
-                Log.d(TAG, "Successfully copied " + totalBytes + " bytes to " + mediaFile.getAbsolutePath());
+            String contentHash;
+            try {
+                contentHash = copyFromUri(contentResolver, sourceUri, mediaFile, progressListener);
+                Log.d(TAG, "Successfully copied " + mediaFile.length() + " bytes to " + mediaFile.getAbsolutePath()
+                        + ", hash " + contentHash);
+            } catch (InterruptedIOException | ClosedByInterruptException e) {
+                Log.d(TAG, "Import cancelled for Uri: " + sourceUri);
+                mediaFile.delete();
+                // Keep the thread marked as interrupted so the result is not delivered
+                Thread.currentThread().interrupt();
+                return null;
             } catch (Exception e) {
                 Log.e(TAG, "Error copying file from Uri", e);
+                mediaFile.delete();
                 return null;
             }
             
@@ -186,63 +580,27 @@ public class MediaRepository {
             
             // Create a Media object
             Media media = new Media(noteId, mediaType, mediaFile.getAbsolutePath());
+            media.setContentHash(contentHash);
             Log.d(TAG, "Created Media object: " + media.toString());
             
-            // Generate and save thumbnail if it's a video
-            if (mediaType == Media.TYPE_VIDEO) {
-                Log.d(TAG, "Generating thumbnail for video");
+            // Tiles only ever decode this small file, never the full-resolution image
+            if (mediaType == Media.TYPE_IMAGE) {
                 File thumbnailFile = createThumbnailFile(context);
-                Bitmap thumbnail = null;
-                
-                try {
-                    // For Android 10+ (API 29+)
-                    thumbnail = ThumbnailUtils.createVideoThumbnail(mediaFile, new Size(320, 240), null);
-                    Log.d(TAG, "Created video thumbnail using modern API");
-                } catch (Exception e) {
-                    Log.e(TAG, "Error creating video thumbnail with modern API", e);
-                    // Fallback for older Android versions
-                    try {
-                        thumbnail = ThumbnailUtils.createVideoThumbnail(
-                                mediaFile.getAbsolutePath(), MediaStore.Images.Thumbnails.MINI_KIND);
-                        Log.d(TAG, "Created video thumbnail using legacy API");
-                    } catch (Exception e2) {
-                        Log.e(TAG, "Error creating video thumbnail with legacy API", e2);
-                    }
-                }
-                
-                if (thumbnail != null) {
-                    try (FileOutputStream out = new FileOutputStream(thumbnailFile)) {
-                        thumbnail.compress(Bitmap.CompressFormat.JPEG, 90, out);
-                        media.setThumbnailUri(thumbnailFile.getAbsolutePath());
-                        Log.d(TAG, "Saved thumbnail to: " + thumbnailFile.getAbsolutePath());
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error saving thumbnail", e);
-                    }
+                if (ThumbnailGenerator.createImageThumbnail(mediaFile, thumbnailFile)) {
+                    media.setThumbnailUri(thumbnailFile.getAbsolutePath());
+                    Log.d(TAG, "Saved thumbnail to: " + thumbnailFile.getAbsolutePath());
                 }
             }
             
-            // Insert the media into the database
-            Log.d(TAG, "Inserting media into database");
-            if (insert(media)) {
-                Log.d(TAG, "Successfully inserted media into database");
-                return media;
-            } else {
-                Log.e(TAG, "Failed to insert media into database");
-                // Clean up if database insertion failed
-                if (mediaFile.exists()) {
-                    boolean deleted = mediaFile.delete();
-                    Log.d(TAG, "Deleted media file: " + deleted);
-                }
-                if (media.getThumbnailUri() != null) {
-                    File thumbnailFile = new File(media.getThumbnailUri());
-                    if (thumbnailFile.exists()) {
-                        boolean deleted = thumbnailFile.delete();
-                        Log.d(TAG, "Deleted thumbnail file: " + deleted);
-                    }
-                }
+            // Video thumbnails need a decoder and are created later by ThumbnailQueue,
+            // after the row is inserted
+            
+            // A batch may have been cancelled while the thumbnail was being created
+            if (Thread.currentThread().isInterrupted()) {
+                deleteMediaFiles(media);
                 return null;
             }
-            
+            return media;
         } catch (IOException e) {
             Log.e(TAG, "Error saving media from Uri", e);
             return null;
@@ -252,6 +610,98 @@ public class MediaRepository {
         }
     }
     
+    // Removes the media file and thumbnail of a Media that never made it into the database
+    private void deleteMediaFiles(Media media) {
+        if (media.getUri() != null) {
+            File mediaFile = new File(media.getUri());
+            if (mediaFile.exists()) {
+                boolean deleted = mediaFile.delete();
+                Log.d(TAG, "Deleted media file: " + deleted);
+            }
+        }
+        if (media.getThumbnailUri() != null) {
+            File thumbnailFile = new File(media.getThumbnailUri());
+            if (thumbnailFile.exists()) {
+                boolean deleted = thumbnailFile.delete();
+                Log.d(TAG, "Deleted thumbnail file: " + deleted);
+            }
+        }
+    }
+    
+    // Streams the Uri into the file and returns the hex SHA-256 of the content, computed in
+    // the same pass so the file is never read twice. A file descriptor is preferred, and the
+    // stream is the fallback for providers that don't offer one. Throws
+    // InterruptedIOException when the importing thread is interrupted.
+    private String copyFromUri(ContentResolver contentResolver, Uri sourceUri, File destination,
+                               ProgressListener progressListener) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(HASH_ALGORITHM + " not available", e);
+        }
+        
+        ParcelFileDescriptor descriptor = null;
+        try {
+            descriptor = contentResolver.openFileDescriptor(sourceUri, "r");
+        } catch (FileNotFoundException | SecurityException e) {
+            Log.d(TAG, "No file descriptor for Uri, falling back to stream: " + sourceUri);
+        }
+        
+        if (descriptor != null) {
+            try (ParcelFileDescriptor pfd = descriptor;
+                 FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+                 FileOutputStream out = new FileOutputStream(destination)) {
+                copyHashing(in.getChannel(), out.getChannel(), pfd.getStatSize(), digest, progressListener);
+            }
+        } else {
+            try (InputStream in = contentResolver.openInputStream(sourceUri);
+                 FileOutputStream out = new FileOutputStream(destination)) {
+                if (in == null) {
+                    throw new FileNotFoundException("Failed to open input stream for Uri: " + sourceUri);
+                }
+                copyHashing(Channels.newChannel(in), out.getChannel(), -1, digest, progressListener);
+            }
+        }
+        return toHex(digest.digest());
+    }
+    
+    // Copies through one large direct buffer, feeding each chunk to the digest before it
+    // is written
+    private static long copyHashing(ReadableByteChannel source, WritableByteChannel target, long size,
+                                    MessageDigest digest, ProgressListener progressListener) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+        long total = 0;
+        while (source.read(buffer) != -1) {
+            checkNotCancelled();
+            buffer.flip();
+            digest.update(buffer);
+            buffer.rewind();
+            while (buffer.hasRemaining()) {
+                total += target.write(buffer);
+            }
+            buffer.clear();
+            if (progressListener != null) {
+                progressListener.onProgress(total, size);
+            }
+        }
+        return total;
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    private static void checkNotCancelled() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Media import cancelled");
+        }
+    }
+    
     // Create a file for storing media
     private File createMediaFile(Context context, int mediaType) throws IOException {
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
@@ -266,6 +716,17 @@ public class MediaRepository {
         return new File(storageDir, fileName + extension);
     }
     
+    // Content-addressed location of a stored file
+    private File createBlobFile(String hash, int mediaType) {
+        File storageDir = new File(application.getFilesDir(), "media");
+        if (!storageDir.exists()) {
+            storageDir.mkdirs();
+        }
+        
+        String extension = (mediaType == Media.TYPE_IMAGE) ? ".jpg" : ".mp4";
+        return new File(storageDir, hash + extension);
+    }
+    
     // Create a file for storing thumbnails
     private File createThumbnailFile(Context context) throws IOException {
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
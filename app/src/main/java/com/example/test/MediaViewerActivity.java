@@ -1,6 +1,8 @@
 package com.example.test;
 
 import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Bundle;
@@ -24,6 +26,7 @@ public class MediaViewerActivity extends AppCompatActivity {
     
     public static final String EXTRA_MEDIA_URI = "media_uri";
     public static final String EXTRA_MEDIA_TYPE = "media_type";
+    public static final String EXTRA_MEDIA_ID = "media_id";
     
     private ImageView fullscreenImageView;
     private VideoView fullscreenVideoView;
@@ -33,6 +36,7 @@ public class MediaViewerActivity extends AppCompatActivity {
     
     private String mediaUri;
     private int mediaType;
+    private String mediaId;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -57,6 +61,7 @@ public class MediaViewerActivity extends AppCompatActivity {
         if (intent != null) {
             mediaUri = intent.getStringExtra(EXTRA_MEDIA_URI);
             mediaType = intent.getIntExtra(EXTRA_MEDIA_TYPE, Media.TYPE_IMAGE);
+            mediaId = intent.getStringExtra(EXTRA_MEDIA_ID);
             
             if (mediaUri != null) {
                 loadMedia();
@@ -88,6 +93,10 @@ public class MediaViewerActivity extends AppCompatActivity {
                 getPackageName() + ".fileprovider",
                 mediaFile);
         
+        // The tile's preview is shown right away while the full-size media loads
+        Bitmap preview = mediaId != null ? PreviewCache.getInstance(this).peek(mediaId) : null;
+        Log.d(TAG, "Preview " + (preview != null ? "found" : "not cached") + ", " + PreviewCache.getInstance(this));
+        
         if (mediaType == Media.TYPE_IMAGE) {
             // Load image
             fullscreenVideoView.setVisibility(View.GONE);
@@ -95,6 +104,7 @@ public class MediaViewerActivity extends AppCompatActivity {
             
             Glide.with(this)
                     .load(contentUri)
+                    .placeholder(preview != null ? new BitmapDrawable(getResources(), preview) : null)
                     .fitCenter()
                     .listener(new com.bumptech.glide.request.RequestListener<android.graphics.drawable.Drawable>() {
                         @Override
@@ -113,12 +123,18 @@ public class MediaViewerActivity extends AppCompatActivity {
             
         } else if (mediaType == Media.TYPE_VIDEO) {
             // Load video
-            fullscreenImageView.setVisibility(View.GONE);
+            if (preview != null) {
+                fullscreenImageView.setImageBitmap(preview);
+                fullscreenImageView.setVisibility(View.VISIBLE);
+            } else {
+                fullscreenImageView.setVisibility(View.GONE);
+            }
             fullscreenVideoView.setVisibility(View.VISIBLE);
             
             fullscreenVideoView.setVideoURI(contentUri);
             fullscreenVideoView.setOnPreparedListener(mp -> {
                 loadingProgressBar.setVisibility(View.GONE);
+                fullscreenImageView.setVisibility(View.GONE);
                 mp.setLooping(true);
                 fullscreenVideoView.start();
             });
@@ -4,22 +4,34 @@ import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
 import java.util.UUID;
 
-@Entity(tableName = "notes")
+// (timestamp, id) is the sort order of every list query, so they read the index in
+// order instead of sorting the table
+@Entity(tableName = "notes",
+        indices = {@Index({"timestamp", "id"})})
 public class Note {
     @PrimaryKey
     @NonNull
     @ColumnInfo(name = "id")
     private String id;
     
-    @ColumnInfo(name = "content")
-    private String content;
+    // Each text is stored once. A note up to NoteBody.COMPRESSION_THRESHOLD bytes keeps
+    // it in search_text, the column the full-text index reads, and has no body or preview.
+    // A larger note keeps it compressed in body, with the distinct words in search_text
+    // and the start of the text in preview, so neither the index nor the list has to
+    // inflate the body.
+    @ColumnInfo(name = "body")
+    private NoteBody body;
+    
+    @ColumnInfo(name = "preview")
+    private String preview;
+    
+    @ColumnInfo(name = "search_text")
+    private String searchText;
     
     @ColumnInfo(name = "timestamp")
     private long timestamp;
@@ -32,7 +44,7 @@ public class Note {
     @Ignore
     public Note(String content) {
         this.id = UUID.randomUUID().toString();
-        this.content = content;
+        setContent(content);
         this.timestamp = System.currentTimeMillis();
     }
 
@@ -46,11 +58,46 @@ public class Note {
     }
 
     public String getContent() {
-        return content;
+        return body != null ? body.getText() : searchText;
     }
 
+    // For a large note the preview and word list are computed on first use, which for a
+    // note saved from the UI is when Room writes it on the write thread
     public void setContent(String content) {
-        this.content = content;
+        boolean large = content != null && NoteBody.needsBody(content);
+        this.body = large ? NoteBody.fromText(content) : null;
+        this.preview = null;
+        this.searchText = large ? null : content;
+    }
+
+    public NoteBody getBody() {
+        return body;
+    }
+
+    public void setBody(NoteBody body) {
+        this.body = body;
+    }
+
+    public String getPreview() {
+        if (preview == null && body != null) {
+            preview = NoteBody.head(body.getText());
+        }
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
+    public String getSearchText() {
+        if (searchText == null && body != null) {
+            searchText = NoteBody.searchText(body.getText());
+        }
+        return searchText;
+    }
+
+    public void setSearchText(String searchText) {
+        this.searchText = searchText;
     }
 
     public long getTimestamp() {
@@ -62,15 +109,14 @@ public class Note {
     }
 
     public String getFormattedDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy • hh:mm a", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return NoteDateFormatter.getInstance().format(timestamp);
     }
     
     @Override
     public String toString() {
         return "Note{" +
                 "id='" + id + '\'' +
-                ", content='" + content + '\'' +
+                ", compressed=" + (body != null) +
                 ", timestamp=" + timestamp +
                 '}';
     }
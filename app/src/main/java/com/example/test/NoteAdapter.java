@@ -4,53 +4,143 @@ import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.OvershootInterpolator;
-import android.widget.Filter;
-import android.widget.Filterable;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.card.MaterialCardView;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
-public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder> implements Filterable, MediaAdapter.MediaListener {
+public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder> implements MediaAdapter.MediaListener, NotePagingSource.Listener,
+        ThumbnailQueue.Listener {
     private static final String TAG = "NoteAdapter";
     
-    private List<Note> notes;
-    private List<Note> allNotes;
+    // Browsing shows a bounded window from the paging source; a search shows its result list.
+    // Either way the list is handed to the differ, which diffs it on a background thread
+    // and rebinds only the rows that changed.
+    private final NotePagingSource pagingSource;
+    private final AsyncListDiffer<NoteListItem> differ;
+    private boolean searching;
     private final NoteListener noteListener;
     private int lastPosition = -1;
     private Context context;
     
-    // Map to store media lists for each note
-    private Map<String, List<Media>> mediaMap;
+    // Preview tiles (first PREVIEW_MEDIA_COUNT media) and media counts of the notes whose
+    // cards were bound or prefetched, loaded on demand instead of for the whole list. The
+    // LRU keeps memory proportional to how far the user scrolls, up to MEDIA_CACHE_NOTES
+    // notes. Media changes refresh only these entries, without reloading the window, so
+    // they are newer than NoteListItem.getMediaCount() where both exist.
+    private static final int MEDIA_CACHE_NOTES = 100;
+    private final LruCache<String, CardMedia> mediaCache = new LruCache<>(MEDIA_CACHE_NOTES);
+    // Notes whose previews are being loaded, and those waiting for the next batch
+    private final Set<String> loadingMedia = new HashSet<>();
+    private final List<String> queuedMedia = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable loadQueuedMedia = this::loadQueuedMedia;
+    // Rebinds only the media tiles of a card
+    static final Object PAYLOAD_MEDIA = new Object();
     private MediaRepository mediaRepository;
+    private NoteRepository noteRepository;
+    private int mediaGeneration;
+    private NoteRepository.ChangeObserver changeObserver;
+    
+    // Cards show at most this many media tiles
+    private static final int PREVIEW_MEDIA_COUNT = 3;
+    // Tiles of all cards share one pool, so a tile scrolled off in one card is reused by
+    // the next card instead of inflating a new one; sized for the cards of about two screens
+    private static final int MEDIA_POOL_SIZE = PREVIEW_MEDIA_COUNT * 8;
+    private final RecyclerView.RecycledViewPool mediaViewPool = new RecyclerView.RecycledViewPool();
+    
+    private static class CardMedia {
+        static final CardMedia EMPTY = new CardMedia(0, Collections.emptyList());
+        
+        final int count;
+        final List<Media> previews;
+        
+        CardMedia(int count, List<Media> previews) {
+            this.count = count;
+            this.previews = previews;
+        }
+    }
 
     public interface NoteListener {
-        void onNoteEdit(Note note, int position);
-        void onNoteDelete(Note note, int position);
+        void onNoteEdit(NoteListItem note, int position);
+        void onNoteDelete(NoteListItem note, int position);
     }
+    
+    static final DiffUtil.ItemCallback<NoteListItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<NoteListItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull NoteListItem oldItem, @NonNull NoteListItem newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull NoteListItem oldItem, @NonNull NoteListItem newItem) {
+            return oldItem.getTimestamp() == newItem.getTimestamp()
+                    && oldItem.getMediaCount() == newItem.getMediaCount()
+                    && Objects.equals(oldItem.getPreview(), newItem.getPreview());
+        }
+    };
 
     public NoteAdapter(Context context, NoteListener noteListener) {
         this.context = context;
-        this.notes = new ArrayList<>();
-        this.allNotes = new ArrayList<>();
         this.noteListener = noteListener;
-        this.mediaMap = new HashMap<>();
-        this.mediaRepository = new MediaRepository((android.app.Application) context.getApplicationContext());
+        this.mediaViewPool.setMaxRecycledViews(0, MEDIA_POOL_SIZE);
+        android.app.Application application = (android.app.Application) context.getApplicationContext();
+        this.mediaRepository = new MediaRepository(application);
+        this.noteRepository = new NoteRepository(application);
+        this.pagingSource = new NotePagingSource(noteRepository, this);
+        this.differ = new AsyncListDiffer<>(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                // Keep the entry animation anchored to the same rows when rows shift
+                if (position <= lastPosition) {
+                    lastPosition += count;
+                }
+                notifyItemRangeInserted(position, count);
+            }
+            
+            @Override
+            public void onRemoved(int position, int count) {
+                if (position <= lastPosition) {
+                    lastPosition = Math.max(position - 1, lastPosition - count);
+                }
+                notifyItemRangeRemoved(position, count);
+            }
+            
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+            
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        }, new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build());
         Log.d(TAG, "NoteAdapter initialized");
     }
 
@@ -61,10 +151,25 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
         return new NoteViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull NoteViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // Payloads only reach here when every change since the last bind was a media update
+        if (payloads.contains(PAYLOAD_MEDIA)) {
+            holder.bindMedia(getNoteAt(position));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull NoteViewHolder holder, int position) {
-        Note note = notes.get(position);
-        holder.bind(note, position);
+        NoteListItem note = getNoteAt(position);
+        holder.bind(note);
+        
+        // Load the next page before the user reaches the edge of the window
+        if (!searching) {
+            pagingSource.onItemAccessed(note);
+        }
         
         // Apply animation to the items
         setAnimation(holder.itemView, position);
@@ -95,148 +200,214 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
 
     @Override
     public int getItemCount() {
-        return notes.size();
+        return differ.getCurrentList().size();
     }
 
-    public void setNotes(List<Note> notes) {
-        Log.d(TAG, "setNotes: Setting " + (notes != null ? notes.size() : 0) + " notes");
-        
-        // Clear current list
-        this.notes.clear();
-        this.allNotes.clear();
-        
-        // Add all notes from the new list
-        if (notes != null && !notes.isEmpty()) {
-            this.notes.addAll(notes);
-            this.allNotes.addAll(notes);
-            
-            // Log all notes for debugging
-            for (Note note : this.notes) {
-                Log.d(TAG, "Note in adapter: " + note.getId() + " - " + note.getContent());
-                
-                // Load media for each note
-                loadMediaForNote(note.getId());
-            }
+    // Reloads the newest page of notes and leaves search mode
+    public void refresh() {
+        Log.d(TAG, "refresh: Reloading notes");
+        pagingSource.refresh();
+    }
+    
+    // Leaves search mode, if active, and goes back to the paged list
+    public void clearSearch() {
+        if (searching) {
+            refresh();
         }
+    }
+    
+    // Shows a fixed list of notes (search results) until the next refresh
+    public void setSearchResults(List<NoteListItem> notes) {
+        Log.d(TAG, "setSearchResults: Setting " + (notes != null ? notes.size() : 0) + " notes");
+        searching = true;
+        List<NoteListItem> results = notes != null ? new ArrayList<>(notes) : new ArrayList<>();
         
         // Reset last position for animations
         lastPosition = -1;
-        
-        // Notify adapter of changes
-        notifyDataSetChanged();
+        differ.submitList(results);
     }
     
-    private void loadMediaForNote(String noteId) {
-        List<Media> mediaList = mediaRepository.getMediaForNote(noteId);
-        if (mediaList != null && !mediaList.isEmpty()) {
-            mediaMap.put(noteId, mediaList);
-            Log.d(TAG, "Loaded " + mediaList.size() + " media items for note: " + noteId);
-        } else {
-            mediaMap.remove(noteId);
+    @Override
+    public void onRefreshed(List<NoteListItem> window) {
+        searching = false;
+        lastPosition = -1;
+        differ.submitList(window);
+    }
+    
+    @Override
+    public void onWindowChanged(List<NoteListItem> window, List<NoteListItem> added, List<NoteListItem> removed) {
+        if (searching) {
+            return;
         }
+        differ.submitList(window);
     }
-
-    public void addNote(Note note) {
-        Log.d(TAG, "addNote: Adding note: " + note.getId());
-        notes.add(0, note);
-        allNotes.add(0, note);
-        notifyItemInserted(0);
+    
+    // Returns the cached media of a card's note, or queues them and returns null. The
+    // binds of one frame, e.g. a scroll step or a prefetch pass, share a single query.
+    // Notes listed without media are cached as empty without a query, so that a later
+    // media change still refreshes their cards.
+    private CardMedia requestMedia(NoteListItem note) {
+        CardMedia cardMedia = mediaCache.get(note.getId());
+        if (cardMedia == null && note.getMediaCount() == 0) {
+            cardMedia = CardMedia.EMPTY;
+            mediaCache.put(note.getId(), cardMedia);
+        } else if (cardMedia == null && loadingMedia.add(note.getId())) {
+            queueMedia(note.getId());
+        }
+        return cardMedia;
     }
-
-    public Note getNoteAt(int position) {
-        if (position >= 0 && position < notes.size()) {
-            return notes.get(position);
+    
+    private void queueMedia(String noteId) {
+        if (queuedMedia.isEmpty()) {
+            handler.post(loadQueuedMedia);
         }
-        return null;
+        queuedMedia.add(noteId);
     }
     
-    public void updateNote(Note note, int position) {
-        Log.d(TAG, "updateNote: Updating note at position " + position + ": " + note.getId());
-        if (position >= 0 && position < notes.size()) {
-            notes.set(position, note);
-            
-            // Also update in allNotes list
-            for (int i = 0; i < allNotes.size(); i++) {
-                if (allNotes.get(i).getId().equals(note.getId())) {
-                    allNotes.set(i, note);
-                    break;
+    private void loadQueuedMedia() {
+        if (queuedMedia.isEmpty()) {
+            return;
+        }
+        final List<String> noteIds = new ArrayList<>(queuedMedia);
+        queuedMedia.clear();
+        
+        final int generation = mediaGeneration;
+        mediaRepository.getPreviewMediaForNotesAsync(noteIds, PREVIEW_MEDIA_COUNT, loaded -> {
+            // Media changed in the meantime and these notes were queued again
+            if (generation != mediaGeneration) {
+                return;
+            }
+            loadingMedia.removeAll(noteIds);
+            Log.d(TAG, "Loaded media for " + loaded.size() + " of " + noteIds.size() + " notes");
+            for (String noteId : noteIds) {
+                CardMedia cardMedia = toCardMedia(loaded.get(noteId));
+                CardMedia previous = mediaCache.put(noteId, cardMedia);
+                
+                // Rebind only the tiles of the cards whose attachments actually changed;
+                // new thumbnails reach the tiles through onThumbnailReady
+                boolean changed = previous != null ? !sameMedia(previous, cardMedia) : cardMedia.count > 0;
+                if (changed) {
+                    int position = indexOfNote(noteId);
+                    if (position != -1) {
+                        notifyItemChanged(position, PAYLOAD_MEDIA);
+                    }
                 }
             }
-            
-            // Reload media for this note
-            loadMediaForNote(note.getId());
-            
-            notifyItemChanged(position);
-        } else {
-            Log.w(TAG, "updateNote: Invalid position: " + position);
+        });
+    }
+    
+    private static CardMedia toCardMedia(List<MediaPreview> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return CardMedia.EMPTY;
         }
+        List<Media> previews = new ArrayList<>(rows.size());
+        for (MediaPreview row : rows) {
+            previews.add(row.getMedia());
+        }
+        return new CardMedia(rows.get(0).getMediaCount(), previews);
     }
-
-    public void removeNote(int position) {
-        Log.d(TAG, "removeNote: Removing note at position " + position);
-        if (position >= 0 && position < notes.size()) {
-            Note removedNote = notes.remove(position);
-            
-            // Also remove from allNotes list
-            for (int i = 0; i < allNotes.size(); i++) {
-                if (allNotes.get(i).getId().equals(removedNote.getId())) {
-                    allNotes.remove(i);
-                    break;
-                }
-            }
-            
-            // Remove media for this note
-            mediaMap.remove(removedNote.getId());
-            
-            Log.d(TAG, "removeNote: Successfully removed note: " + removedNote.getId());
-            notifyItemRemoved(position);
-            // Notify adapter of changes to update positions of subsequent items
-            notifyItemRangeChanged(position, notes.size() - position);
-        } else {
-            Log.w(TAG, "removeNote: Invalid position: " + position);
+    
+    // Reloads the counts and previews of the cached notes and of those still loading,
+    // which is bounded by the cache size no matter how many notes the table holds
+    private void reloadMedia() {
+        mediaGeneration++;
+        Set<String> noteIds = new LinkedHashSet<>(mediaCache.snapshot().keySet());
+        noteIds.addAll(loadingMedia);
+        loadingMedia.clear();
+        queuedMedia.clear();
+        handler.removeCallbacks(loadQueuedMedia);
+        for (String noteId : noteIds) {
+            loadingMedia.add(noteId);
+            queueMedia(noteId);
         }
     }
     
     @Override
-    public Filter getFilter() {
-        return notesFilter;
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        ThumbnailQueue.getInstance(context).addListener(this);
+        changeObserver = noteRepository.addChangeObserver(this::onTablesChanged);
     }
     
-    private final Filter notesFilter = new Filter() {
-        @Override
-        protected FilterResults performFiltering(CharSequence constraint) {
-            List<Note> filteredList = new ArrayList<>();
-            
-            if (constraint == null || constraint.length() == 0) {
-                filteredList.addAll(allNotes);
-            } else {
-                String filterPattern = constraint.toString().toLowerCase().trim();
-                
-                for (Note note : allNotes) {
-                    if (note.getContent().toLowerCase().contains(filterPattern)) {
-                        filteredList.add(note);
-                    }
-                }
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        ThumbnailQueue.getInstance(context).removeListener(this);
+        if (changeObserver != null) {
+            noteRepository.removeChangeObserver(changeObserver);
+            changeObserver = null;
+        }
+        // Queued notes are requested again by their next bind
+        handler.removeCallbacks(loadQueuedMedia);
+        loadingMedia.removeAll(queuedMedia);
+        queuedMedia.clear();
+    }
+    
+    // Keeps the list in sync with the database without reloading it on every resume: the
+    // window is re-read only after notes change and reports just the changed notes; after
+    // media changes only the cached cards' media are re-read, and the cards whose count
+    // or tiles differ are rebound
+    private void onTablesChanged(Set<String> tables) {
+        if (tables.contains("notes")) {
+            pagingSource.reload();
+        }
+        if (tables.contains("media")) {
+            reloadMedia();
+        }
+    }
+    
+    // The visible tiles update themselves; this only keeps the cached lists current so
+    // that a later rebind of the card doesn't bring back the old tile
+    @Override
+    public void onThumbnailReady(Media media) {
+        CardMedia cardMedia = mediaCache.get(media.getNoteId());
+        if (cardMedia == null) {
+            return;
+        }
+        List<Media> updated = new ArrayList<>(cardMedia.previews);
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).getId().equals(media.getId())) {
+                updated.set(i, media);
+                mediaCache.put(media.getNoteId(), new CardMedia(cardMedia.count, updated));
+                return;
             }
-            
-            FilterResults results = new FilterResults();
-            results.values = filteredList;
-            return results;
         }
-        
-        @Override
-        protected void publishResults(CharSequence constraint, FilterResults results) {
-            notes.clear();
-            @SuppressWarnings("unchecked")
-            List<Note> filteredList = (List<Note>) results.values;
-            notes.addAll(filteredList);
-            
-            // Reset last position for animations
-            lastPosition = -1;
-            
-            notifyDataSetChanged();
+    }
+    
+    // Compares what a card shows apart from thumbnails, which the tiles get from
+    // onThumbnailReady; a thumbnail written by ThumbnailQueue then rebinds nothing
+    private static boolean sameMedia(CardMedia a, CardMedia b) {
+        if (a.count != b.count || a.previews.size() != b.previews.size()) {
+            return false;
         }
-    };
+        for (int i = 0; i < a.previews.size(); i++) {
+            Media mediaA = a.previews.get(i);
+            Media mediaB = b.previews.get(i);
+            if (!mediaA.getId().equals(mediaB.getId())
+                    || mediaA.getType() != mediaB.getType()
+                    || !Objects.equals(mediaA.getUri(), mediaB.getUri())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int indexOfNote(String noteId) {
+        for (int i = 0; i < getItemCount(); i++) {
+            if (getNoteAt(i).getId().equals(noteId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public NoteListItem getNoteAt(int position) {
+        List<NoteListItem> notes = differ.getCurrentList();
+        if (position >= 0 && position < notes.size()) {
+            return notes.get(position);
+        }
+        return null;
+    }
     
     @Override
     public void onMediaClick(Media media, int position) {
@@ -244,6 +415,7 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
         Intent intent = new Intent(context, MediaViewerActivity.class);
         intent.putExtra(MediaViewerActivity.EXTRA_MEDIA_URI, media.getUri());
         intent.putExtra(MediaViewerActivity.EXTRA_MEDIA_TYPE, media.getType());
+        intent.putExtra(MediaViewerActivity.EXTRA_MEDIA_ID, media.getId());
         context.startActivity(intent);
     }
     
@@ -272,40 +444,29 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
             mediaCountBadge = itemView.findViewById(R.id.mediaCountBadge);
             mediaCountText = itemView.findViewById(R.id.mediaCountText);
             
-            // Setup media RecyclerView
+            // Setup media RecyclerView. Tiles return to the shared pool when the card is
+            // recycled, and the outer list prefetches all tiles of a card it is about to show.
+            LinearLayoutManager layoutManager = new LinearLayoutManager(context, LinearLayoutManager.HORIZONTAL, false);
+            layoutManager.setRecycleChildrenOnDetach(true);
+            layoutManager.setInitialPrefetchItemCount(PREVIEW_MEDIA_COUNT);
             mediaAdapter = new MediaAdapter(context, NoteAdapter.this);
-            mediaRecyclerView.setLayoutManager(new LinearLayoutManager(context, LinearLayoutManager.HORIZONTAL, false));
+            mediaRecyclerView.setLayoutManager(layoutManager);
+            mediaRecyclerView.setRecycledViewPool(mediaViewPool);
             mediaRecyclerView.setAdapter(mediaAdapter);
         }
 
-        public void bind(final Note note, final int position) {
-            noteContent.setText(note.getContent());
+        public void bind(final NoteListItem note) {
+            // Only the stored preview is loaded for the list, never the body
+            noteContent.setText(note.getPreview());
             noteTimestamp.setText(note.getFormattedDate());
-            
-            // Setup media
-            List<Media> mediaList = mediaMap.get(note.getId());
-            if (mediaList != null && !mediaList.isEmpty()) {
-                // Show media preview (up to 3 items)
-                int previewCount = Math.min(mediaList.size(), 3);
-                List<Media> previewList = mediaList.subList(0, previewCount);
-                
-                mediaAdapter.setMediaList(previewList);
-                mediaRecyclerView.setVisibility(View.VISIBLE);
-                
-                // Show media count badge if there are more than 3 items
-                if (mediaList.size() > 3) {
-                    mediaCountBadge.setVisibility(View.VISIBLE);
-                    mediaCountText.setText(mediaList.size() + " attachments");
-                } else {
-                    mediaCountBadge.setVisibility(View.GONE);
-                }
-            } else {
-                mediaRecyclerView.setVisibility(View.GONE);
-                mediaCountBadge.setVisibility(View.GONE);
-            }
+            bindMedia(note);
 
             // Add click animation to buttons
             editButton.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) {
+                    return;
+                }
                 animateButtonClick(v);
                 if (noteListener != null) {
                     noteListener.onNoteEdit(note, position);
@@ -313,6 +474,10 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
             });
 
             deleteButton.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) {
+                    return;
+                }
                 animateButtonClick(v);
                 if (noteListener != null) {
                     noteListener.onNoteDelete(note, position);
@@ -325,6 +490,26 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteAdapter.NoteViewHolder
             });
         }
         
+        // Tiles and badge only; called on its own when the previews of the note arrive
+        void bindMedia(NoteListItem note) {
+            CardMedia cardMedia = requestMedia(note);
+            if (cardMedia != null && !cardMedia.previews.isEmpty()) {
+                mediaAdapter.setMediaList(cardMedia.previews);
+                mediaRecyclerView.setVisibility(View.VISIBLE);
+                
+                // Show media count badge if there are more than 3 items
+                if (cardMedia.count > PREVIEW_MEDIA_COUNT) {
+                    mediaCountBadge.setVisibility(View.VISIBLE);
+                    mediaCountText.setText(cardMedia.count + " attachments");
+                } else {
+                    mediaCountBadge.setVisibility(View.GONE);
+                }
+            } else {
+                mediaRecyclerView.setVisibility(View.GONE);
+                mediaCountBadge.setVisibility(View.GONE);
+            }
+        }
+        
         private void animateButtonClick(View view) {
             ObjectAnimator scaleDownX = ObjectAnimator.ofFloat(view, "scaleX", 1f, 0.8f);
             ObjectAnimator scaleDownY = ObjectAnimator.ofFloat(view, "scaleY", 1f, 0.8f);
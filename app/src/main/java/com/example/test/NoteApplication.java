@@ -1,11 +1,21 @@
 package com.example.test;
 
+import android.app.Activity;
 import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Bundle;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
 public class NoteApplication extends Application {
     private static final String TAG = "NoteApplication";
     
+    private int startedActivities;
+    
     @Override
     public void onCreate() {
         super.onCreate();
@@ -18,5 +28,62 @@ public class NoteApplication extends Application {
         } catch (Exception e) {
             Log.e(TAG, "Error initializing database", e);
         }
+        
+        // Pick up thumbnails that were still pending when the process last died
+        ThumbnailQueue.getInstance(this).resume();
+        
+        // Clean up files left behind by earlier sessions
+        MediaGarbageCollector.getInstance(this).requestRun();
+        
+        // Cached note dates must be formatted again when the locale or time zone changes
+        IntentFilter filter = new IntentFilter(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Log.d(TAG, "Invalidating date cache: " + intent.getAction());
+                NoteDateFormatter.getInstance().invalidate();
+            }
+        }, filter);
+        
+        // Once no activity is visible the process can be killed at any time, so pending
+        // autosaves are written right away instead of after the idle delay. The write is
+        // queued on the writer thread; waiting for it here would only block the UI thread,
+        // not keep the process alive.
+        registerActivityLifecycleCallbacks(new ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityStarted(@NonNull Activity activity) {
+                startedActivities++;
+            }
+            
+            @Override
+            public void onActivityStopped(@NonNull Activity activity) {
+                startedActivities--;
+                if (startedActivities == 0 && !activity.isChangingConfigurations()) {
+                    Log.d(TAG, "App in background, flushing autosaved notes");
+                    NoteWriteBuffer.getInstance(NoteApplication.this).flush();
+                }
+            }
+            
+            @Override
+            public void onActivityCreated(@NonNull Activity activity, Bundle savedInstanceState) {
+            }
+            
+            @Override
+            public void onActivityResumed(@NonNull Activity activity) {
+            }
+            
+            @Override
+            public void onActivityPaused(@NonNull Activity activity) {
+            }
+            
+            @Override
+            public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+            }
+            
+            @Override
+            public void onActivityDestroyed(@NonNull Activity activity) {
+            }
+        });
     }
 }
\ No newline at end of file
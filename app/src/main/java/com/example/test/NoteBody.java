@@ -0,0 +1,219 @@
+package com.example.test;
+
+import androidx.annotation.NonNull;
+import androidx.room.TypeConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// The text of a large note as stored in notes.body. Notes up to COMPRESSION_THRESHOLD
+// bytes have no body: their text is kept once, in the indexed search_text column (see
+// Note). Larger ones (pasted logs, transcripts) are deflated, which typically shrinks them
+// to a fifth. Both directions are lazy: a body read from the database is only inflated
+// when its text is asked for, and a body created from text is only compressed when Room
+// writes it, on the write thread.
+//
+// Stored format: one FORMAT_* byte, then the UTF-8 bytes, or for FORMAT_DEFLATE the
+// length of the UTF-8 bytes as an int followed by the deflate stream.
+public final class NoteBody {
+    static final int COMPRESSION_THRESHOLD = 4 * 1024;
+    static final int PREVIEW_LENGTH = 200;
+    // What the preview column and the list projection keep of a text: enough to cut the
+    // same preview as from the whole text
+    static final int HEAD_LENGTH = PREVIEW_LENGTH + 1;
+
+    static final byte FORMAT_UTF8 = 0;
+    static final byte FORMAT_DEFLATE = 1;
+
+    private String text;
+    private byte[] data;
+
+    private NoteBody(String text, byte[] data) {
+        this.text = text;
+        this.data = data;
+    }
+
+    public static NoteBody fromText(String text) {
+        return new NoteBody(text != null ? text : "", null);
+    }
+
+    @TypeConverter
+    public static NoteBody fromBytes(byte[] data) {
+        return data != null ? new NoteBody(null, data) : null;
+    }
+
+    @TypeConverter
+    public static byte[] toBytes(NoteBody body) {
+        return body != null ? body.getData() : null;
+    }
+
+    @NonNull
+    public synchronized String getText() {
+        if (text == null) {
+            text = decode(data);
+        }
+        return text;
+    }
+
+    synchronized byte[] getData() {
+        if (data == null) {
+            data = encode(text);
+        }
+        return data;
+    }
+
+    public boolean isCompressed() {
+        return getData()[0] == FORMAT_DEFLATE;
+    }
+    
+    // Whether a text is stored in a body rather than only in search_text. Most notes are
+    // decided by their length without encoding them.
+    static boolean needsBody(String text) {
+        if (text.length() > COMPRESSION_THRESHOLD) {
+            return true;
+        }
+        if (text.length() * 3 <= COMPRESSION_THRESHOLD) {
+            return false;
+        }
+        return text.getBytes(StandardCharsets.UTF_8).length > COMPRESSION_THRESHOLD;
+    }
+    
+    static String head(String text) {
+        return text.length() <= HEAD_LENGTH ? text : text.substring(0, HEAD_LENGTH);
+    }
+
+    // The start of the text, cut at a word boundary, for the list and search results
+    static String preview(String text) {
+        if (text.length() <= PREVIEW_LENGTH) {
+            return text;
+        }
+        int end = PREVIEW_LENGTH;
+        int space = text.lastIndexOf(' ', end);
+        if (space > PREVIEW_LENGTH / 2) {
+            end = space;
+        }
+        return text.substring(0, end) + "…";
+    }
+
+    // What the full-text index sees of a text with a body: every distinct word once, which
+    // keeps the index small while all word and prefix queries still match; only the term
+    // counts used for ranking are lost. Words are split like FTS4's simple tokenizer:
+    // ASCII letters and digits and all non-ASCII characters form words. Case is left to
+    // the tokenizer, which folds ASCII only.
+    static String searchText(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                terms.add(text.substring(start, i));
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String term : terms) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(term);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isTokenChar(char c) {
+        return c >= 0x80 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static byte[] encode(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > COMPRESSION_THRESHOLD) {
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(utf8);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 4);
+                out.write(FORMAT_DEFLATE);
+                out.write(ByteBuffer.allocate(4).putInt(utf8.length).array(), 0, 4);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                // Text that doesn't compress (already random-looking) stays plain
+                if (out.size() < utf8.length) {
+                    return out.toByteArray();
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        byte[] data = new byte[utf8.length + 1];
+        data[0] = FORMAT_UTF8;
+        System.arraycopy(utf8, 0, data, 1, utf8.length);
+        return data;
+    }
+
+    private static String decode(byte[] data) {
+        if (data.length == 0) {
+            return "";
+        }
+        if (data[0] == FORMAT_UTF8) {
+            return new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+        }
+        if (data[0] != FORMAT_DEFLATE) {
+            throw new IllegalStateException("Unknown note body format " + data[0]);
+        }
+        int length = ByteBuffer.wrap(data, 1, 4).getInt();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 5, data.length - 5);
+            byte[] utf8 = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(utf8, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated note body");
+                }
+                read += n;
+            }
+            return new String(utf8, 0, read, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt note body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Bodies are equal when their text is; stored bodies are compared without inflating
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NoteBody)) {
+            return false;
+        }
+        NoteBody other = (NoteBody) o;
+        if (data != null && other.data != null) {
+            return Arrays.equals(data, other.data);
+        }
+        return getText().equals(other.getText());
+    }
+
+    @Override
+    public int hashCode() {
+        return getText().hashCode();
+    }
+}
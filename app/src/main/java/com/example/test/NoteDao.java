@@ -7,12 +7,15 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import java.util.List;
 
 @Dao
 public interface NoteDao {
     
+    // For new notes only: REPLACE deletes an existing row first, which cascades to the
+    // note's media. Saves of notes that may exist go through upsert.
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(Note note);
     
@@ -25,12 +28,80 @@ public interface NoteDao {
     @Query("DELETE FROM notes WHERE id = :noteId")
     void deleteById(String noteId);
     
+    // List variants run as one transaction, so the whole batch costs a single commit
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(List<Note> notes);
+    
+    @Update
+    void update(List<Note> notes);
+    
+    @Delete
+    void delete(List<Note> notes);
+    
+    // Inserts new notes and updates existing ones in place; unlike REPLACE this never
+    // deletes a row, so the note's media survive
+    @Upsert
+    void upsert(Note note);
+    
+    @Upsert
+    void upsert(List<Note> notes);
+    
+    @Query("DELETE FROM notes WHERE id IN (:noteIds)")
+    void deleteByIds(List<String> noteIds);
+    
     @Query("DELETE FROM notes")
     void deleteAllNotes();
     
-    @Query("SELECT * FROM notes ORDER BY timestamp DESC")
+    @Query("SELECT * FROM notes ORDER BY timestamp DESC, id DESC")
     List<Note> getAllNotes();
     
-    @Query("SELECT * FROM notes WHERE content LIKE '%' || :query || '%' ORDER BY timestamp DESC")
-    List<Note> searchNotes(String query);
+    // Columns of a NoteListItem: everything a card shows, without the body. The preview is
+    // the stored one of a large note or the start of a small note's text. The media
+    // count is answered from index_media_note_id_timestamp alone.
+    String LIST_ITEM_COLUMNS = "notes.id, notes.timestamp, " +
+            "COALESCE(notes.preview, substr(notes.search_text, 1, " + NoteBody.HEAD_LENGTH + ")) AS preview, " +
+            "(SELECT COUNT(*) FROM media WHERE media.note_id = notes.id) AS media_count";
+    
+    @Query("SELECT * FROM notes WHERE id = :noteId")
+    Note getNoteById(String noteId);
+    
+    // Keyset pagination over (timestamp DESC, id DESC): each page starts right after the
+    // last row of the previous one, so the cost does not grow with the scroll depth
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " FROM notes ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<NoteListItem> getFirstNotesPage(int limit);
+    
+    // The redundant timestamp bound lets SQLite seek into index_notes_timestamp_id instead
+    // of walking it from the newest note and filtering out the rows before the key
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " FROM notes WHERE timestamp <= :timestamp " +
+            "AND (timestamp < :timestamp OR id < :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<NoteListItem> getNotesPageAfter(long timestamp, String id, int limit);
+    
+    // Like getNotesPageAfter, but starting with the given note itself; used to reload the
+    // window the list currently shows
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " FROM notes WHERE timestamp <= :timestamp " +
+            "AND (timestamp < :timestamp OR id <= :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<NoteListItem> getNotesPageFrom(long timestamp, String id, int limit);
+    
+    // Returns the page in ascending order, nearest row first
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " FROM notes WHERE timestamp >= :timestamp " +
+            "AND (timestamp > :timestamp OR id > :id) " +
+            "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<NoteListItem> getNotesPageBefore(long timestamp, String id, int limit);
+    
+    // Newest notes with from <= timestamp < to, at most limit of them
+    @Query("SELECT " + LIST_ITEM_COLUMNS + " FROM notes WHERE timestamp >= :from AND timestamp < :to " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<NoteListItem> getNotesBetween(long from, long to, int limit);
+    
+    @Query("SELECT COUNT(*) FROM notes WHERE timestamp >= :from AND timestamp < :to")
+    int countNotesBetween(long from, long to);
+    
+    // Full-text search through the notes_fts index. The query must already be in FTS4
+    // MATCH syntax (see NoteRepository.buildFtsQuery); results are ranked by the caller.
+    @Query("SELECT " + LIST_ITEM_COLUMNS + ", notes.search_text, matchinfo(notes_fts, 'pcx') AS match_info FROM notes " +
+            "JOIN notes_fts ON notes.rowid = notes_fts.rowid " +
+            "WHERE notes_fts MATCH :ftsQuery")
+    List<NoteSearchResult> searchNotes(String ftsQuery);
 }
\ No newline at end of file
@@ -1,21 +1,53 @@
 package com.example.test;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {Note.class, Media.class}, version = 2, exportSchema = false)
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Database(entities = {Note.class, Media.class, NoteFts.class, MediaBlob.class}, version = 6, exportSchema = false)
+@TypeConverters(NoteBody.class)
 public abstract class NoteDatabase extends RoomDatabase {
     
     private static NoteDatabase instance;
     
+    static final String DATABASE_NAME = "note_database";
+    
+    // Reads run on a bounded pool and use the WAL connection pool concurrently; writes are
+    // serialised on one thread, so they queue here instead of contending for the write
+    // lock inside SQLite. Neither ever runs on the main thread.
+    private static final int NUMBER_OF_THREADS = 4;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    static final ExecutorService databaseExecutor = Executors.newFixedThreadPool(NUMBER_OF_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "note-db-" + threadCount.incrementAndGet());
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    static final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "note-db-write");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
     public abstract NoteDao noteDao();
     public abstract MediaDao mediaDao();
+    public abstract MediaBlobDao mediaBlobDao();
     
     // Migration from version 1 to 2 (adding media table)
     private static final Migration MIGRATION_1_2 = new Migration(1, 2) {
@@ -37,16 +69,179 @@ public abstract class NoteDatabase extends RoomDatabase {
         }
     };
     
+    // Migration from version 2 to 3 (adding the notes_fts full-text index)
+    private static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // External content FTS4 table over notes.content, same definition Room generates
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `notes_fts` USING FTS4(" +
+                    "`content` TEXT, content=`notes`)");
+            
+            // Triggers that keep the index in sync with the notes table
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE " +
+                    "BEFORE UPDATE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE " +
+                    "BEFORE DELETE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE " +
+                    "AFTER UPDATE ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `content`) " +
+                    "VALUES (NEW.`rowid`, NEW.`content`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT " +
+                    "AFTER INSERT ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `content`) " +
+                    "VALUES (NEW.`rowid`, NEW.`content`); END");
+            
+            // Index the notes that already exist
+            database.execSQL("INSERT INTO `notes_fts`(`notes_fts`) VALUES ('rebuild')");
+        }
+    };
+    
+    // Migration from version 3 to 4 (content-addressed media files)
+    private static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `media_blobs` (" +
+                    "`hash` TEXT NOT NULL, " +
+                    "`path` TEXT NOT NULL, " +
+                    "`size` INTEGER NOT NULL, " +
+                    "`ref_count` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`hash`))");
+            database.execSQL("ALTER TABLE `media` ADD COLUMN `content_hash` TEXT");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_media_content_hash` ON `media` (`content_hash`)");
+            createBlobRefCountTriggers(database);
+        }
+    };
+    
+    // Migration from version 4 to 5 (indexes matching the timestamp sort orders)
+    private static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_timestamp_id` ON `notes` (`timestamp`, `id`)");
+            // The new media index starts with note_id, so it also serves the foreign key
+            database.execSQL("DROP INDEX IF EXISTS `index_media_note_id`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_media_note_id_timestamp` ON `media` (`note_id`, `timestamp`)");
+        }
+    };
+    
+    // Migration from version 5 to 6 (compressed note bodies). notes.content is replaced
+    // by body, preview and search_text, and the full-text index moves to search_text.
+    // Small notes keep their text in search_text only; see Note.
+    // SQLite can't drop a column here, so the table is rebuilt; foreign keys are not
+    // enforced yet while migrations run, so dropping the old table leaves media alone.
+    private static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT");
+            database.execSQL("DROP TABLE IF EXISTS `notes_fts`");
+            
+            database.execSQL("CREATE TABLE IF NOT EXISTS `notes_new` (" +
+                    "`id` TEXT NOT NULL, " +
+                    "`body` BLOB, " +
+                    "`preview` TEXT, " +
+                    "`search_text` TEXT, " +
+                    "`timestamp` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`id`))");
+            
+            // The compression is done in Java, so the rows are copied one by one
+            try (Cursor cursor = database.query("SELECT `id`, `content`, `timestamp` FROM `notes`")) {
+                while (cursor.moveToNext()) {
+                    Note note = new Note(cursor.getString(1));
+                    database.execSQL("INSERT INTO `notes_new` (`id`, `body`, `preview`, `search_text`, `timestamp`) " +
+                            "VALUES (?, ?, ?, ?, ?)", new Object[] {
+                            cursor.getString(0),
+                            NoteBody.toBytes(note.getBody()),
+                            note.getPreview(),
+                            note.getSearchText(),
+                            cursor.getLong(2)});
+                }
+            }
+            
+            database.execSQL("DROP TABLE `notes`");
+            database.execSQL("ALTER TABLE `notes_new` RENAME TO `notes`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_timestamp_id` ON `notes` (`timestamp`, `id`)");
+            
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `notes_fts` USING FTS4(" +
+                    "`search_text` TEXT, content=`notes`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE " +
+                    "BEFORE UPDATE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE " +
+                    "BEFORE DELETE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE " +
+                    "AFTER UPDATE ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `search_text`) " +
+                    "VALUES (NEW.`rowid`, NEW.`search_text`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT " +
+                    "AFTER INSERT ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `search_text`) " +
+                    "VALUES (NEW.`rowid`, NEW.`search_text`); END");
+            database.execSQL("INSERT INTO `notes_fts`(`notes_fts`) VALUES ('rebuild')");
+        }
+    };
+    
+    // Keep media_blobs.ref_count equal to the number of media rows using each blob. Being
+    // triggers, they also count the rows removed when a note delete cascades to its media.
+    private static void createBlobRefCountTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS media_blobs_ref_AFTER_INSERT " +
+                "AFTER INSERT ON `media` WHEN NEW.`content_hash` IS NOT NULL BEGIN " +
+                "UPDATE `media_blobs` SET `ref_count` = `ref_count` + 1 WHERE `hash` = NEW.`content_hash`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS media_blobs_ref_AFTER_DELETE " +
+                "AFTER DELETE ON `media` WHEN OLD.`content_hash` IS NOT NULL BEGIN " +
+                "UPDATE `media_blobs` SET `ref_count` = `ref_count` - 1 WHERE `hash` = OLD.`content_hash`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS media_blobs_ref_AFTER_UPDATE " +
+                "AFTER UPDATE OF `content_hash` ON `media` " +
+                "WHEN OLD.`content_hash` IS NOT NEW.`content_hash` BEGIN " +
+                "UPDATE `media_blobs` SET `ref_count` = `ref_count` - 1 WHERE `hash` = OLD.`content_hash`; " +
+                "UPDATE `media_blobs` SET `ref_count` = `ref_count` + 1 WHERE `hash` = NEW.`content_hash`; END");
+    }
+    
+    // Room creates tables for a fresh install but knows nothing about our own triggers
+    private static final RoomDatabase.Callback CREATE_CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase database) {
+            createBlobRefCountTriggers(database);
+        }
+    };
+    
     public static synchronized NoteDatabase getDatabase(Context context) {
         if (instance == null) {
-            instance = Room.databaseBuilder(
-                    context.getApplicationContext(),
-                    NoteDatabase.class,
-                    "note_database")
-                    .allowMainThreadQueries() // Allow queries on the main thread (for simplicity)
-                    .addMigrations(MIGRATION_1_2) // Add migration strategy
-                    .build();
+            instance = build(context, DATABASE_NAME, DatabaseProfile.TUNED);
         }
         return instance;
     }
+    
+    // Opens a database file with the given profile; the app itself only uses getDatabase
+    static NoteDatabase build(Context context, String name, DatabaseProfile profile) {
+        RoomDatabase.Builder<NoteDatabase> builder = Room.databaseBuilder(
+                context.getApplicationContext(),
+                NoteDatabase.class,
+                name)
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6) // Add migration strategy
+                .addCallback(CREATE_CALLBACK);
+        return profile.applyTo(builder).build();
+    }
+    
+    // Runs a read on the database executor and delivers its result on the main thread
+    static <T> Future<T> executeAsync(Callable<T> task, RepositoryCallback<T> callback) {
+        return executeAsync(databaseExecutor, task, callback);
+    }
+    
+    // Runs a write on the single writer thread and delivers its result on the main thread
+    static <T> Future<T> executeWrite(Callable<T> task, RepositoryCallback<T> callback) {
+        return executeAsync(writeExecutor, task, callback);
+    }
+    
+    // Runs a task on the given executor and delivers its result on the main thread, unless
+    // the task was cancelled with Future.cancel(true) while it ran
+    static <T> Future<T> executeAsync(ExecutorService executor, Callable<T> task, RepositoryCallback<T> callback) {
+        return executor.submit(() -> {
+            T result = task.call();
+            if (callback != null && !Thread.currentThread().isInterrupted()) {
+                mainHandler.post(() -> callback.onComplete(result));
+            }
+            return result;
+        });
+    }
+    
+    static void runOnMainThread(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.example.test;
+
+import android.util.LongSparseArray;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// Formats note timestamps for display. One SimpleDateFormat is reused for the current
+// locale, and formatted strings are memoised per minute (the finest unit shown), so
+// rebinding a row looks up its date without allocating. NoteApplication calls
+// invalidate() when the locale or time zone changes. All methods are thread-safe.
+public final class NoteDateFormatter {
+    private static final String PATTERN = "MMM dd, yyyy • hh:mm a";
+    private static final long MINUTE_MS = 60_000L;
+    private static final int MAX_CACHED_DATES = 512;
+
+    private static final NoteDateFormatter instance = new NoteDateFormatter();
+
+    private final LongSparseArray<String> cache = new LongSparseArray<>();
+    private final Date date = new Date(0);
+    private SimpleDateFormat format;
+    private Locale locale;
+
+    private NoteDateFormatter() {
+    }
+
+    public static NoteDateFormatter getInstance() {
+        return instance;
+    }
+
+    public synchronized String format(long timestamp) {
+        // Locale.getDefault() returns the shared instance, so this check costs no allocation
+        if (format == null || locale != Locale.getDefault()) {
+            reset();
+        }
+
+        long minute = Math.floorDiv(timestamp, MINUTE_MS);
+        String formatted = cache.get(minute);
+        if (formatted == null) {
+            date.setTime(timestamp);
+            formatted = format.format(date);
+            if (cache.size() >= MAX_CACHED_DATES) {
+                cache.clear();
+            }
+            cache.put(minute, formatted);
+        }
+        return formatted;
+    }
+
+    // Drops cached strings and the formatter; the next call rebuilds them for the
+    // current locale and time zone
+    public synchronized void invalidate() {
+        format = null;
+    }
+
+    private void reset() {
+        locale = Locale.getDefault();
+        format = new SimpleDateFormat(PATTERN, locale);
+        format.setTimeZone(TimeZone.getDefault());
+        cache.clear();
+    }
+}
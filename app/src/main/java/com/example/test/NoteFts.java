@@ -0,0 +1,24 @@
+package com.example.test;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+// Full-text index over notes.search_text (see Note). The table is an
+// external content FTS4 table, so it stores no copy of the text; Room keeps it in sync
+// with the notes table through the room_fts_content_sync_* triggers.
+@Fts4(contentEntity = Note.class)
+@Entity(tableName = "notes_fts")
+public class NoteFts {
+
+    @ColumnInfo(name = "search_text")
+    private String searchText;
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public void setSearchText(String searchText) {
+        this.searchText = searchText;
+    }
+}
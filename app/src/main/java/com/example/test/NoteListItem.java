@@ -0,0 +1,80 @@
+package com.example.test;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Ignore;
+
+// What a card in the note list needs: the start of the text instead of all of it, cut
+// to a preview when it is set, and the number of attachments. Loaded by the projections
+// in NoteDao; the full Note is only read when a note is opened for editing.
+public class NoteListItem {
+    @NonNull
+    @ColumnInfo(name = "id")
+    private String id = "";
+
+    @ColumnInfo(name = "timestamp")
+    private long timestamp;
+
+    @ColumnInfo(name = "preview")
+    private String preview;
+
+    @ColumnInfo(name = "media_count")
+    private int mediaCount;
+
+    public NoteListItem() {
+    }
+
+    @Ignore
+    public NoteListItem(@NonNull String id, long timestamp, String preview, int mediaCount) {
+        this.id = id;
+        this.timestamp = timestamp;
+        setPreview(preview);
+        this.mediaCount = mediaCount;
+    }
+
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    public void setId(@NonNull String id) {
+        this.id = id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview != null ? NoteBody.preview(preview) : null;
+    }
+
+    public int getMediaCount() {
+        return mediaCount;
+    }
+
+    public void setMediaCount(int mediaCount) {
+        this.mediaCount = mediaCount;
+    }
+
+    public String getFormattedDate() {
+        return NoteDateFormatter.getInstance().format(timestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "NoteListItem{" +
+                "id='" + id + '\'' +
+                ", timestamp=" + timestamp +
+                ", mediaCount=" + mediaCount +
+                '}';
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.test;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Keeps a bounded, contiguous window of notes ordered by (timestamp DESC, id DESC) and
+// loads pages at either edge with keyset queries as the user scrolls. Pages that fall
+// too far behind the scroll position are dropped, so at most MAX_PAGES * PAGE_SIZE notes
+// are held in memory regardless of table size. All methods must be called on the main thread.
+public class NotePagingSource {
+    private static final String TAG = "NotePagingSource";
+
+    static final int PAGE_SIZE = 50;
+    static final int MAX_PAGES = 6;
+    static final int PREFETCH_DISTANCE = 15;
+
+    // Every callback receives a snapshot of the whole window, ready to be diffed against
+    // the list currently on screen
+    public interface Listener {
+        void onRefreshed(List<NoteListItem> window);
+        void onWindowChanged(List<NoteListItem> window, List<NoteListItem> added, List<NoteListItem> removed);
+    }
+
+    private final NoteRepository noteRepository;
+    private final Listener listener;
+    private final List<NoteListItem> window = new ArrayList<>();
+
+    private boolean hasMoreBefore;
+    private boolean hasMoreAfter;
+    private boolean loadingBefore;
+    private boolean loadingAfter;
+
+    // Bumped on every refresh so that pages requested for an older window are ignored
+    private int generation;
+
+    public NotePagingSource(NoteRepository noteRepository, Listener listener) {
+        this.noteRepository = noteRepository;
+        this.listener = listener;
+    }
+
+    public int size() {
+        return window.size();
+    }
+
+    public NoteListItem getItem(int position) {
+        return window.get(position);
+    }
+
+    // Discards the window and loads the newest page
+    public void refresh() {
+        final int requestGeneration = ++generation;
+        loadingBefore = false;
+        loadingAfter = true;
+        noteRepository.getFirstNotesPageAsync(PAGE_SIZE, page -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loadingAfter = false;
+            window.clear();
+            if (page != null) {
+                window.addAll(page);
+            }
+            hasMoreBefore = false;
+            hasMoreAfter = page != null && page.size() == PAGE_SIZE;
+            Log.d(TAG, "refresh: Loaded " + window.size() + " notes");
+            listener.onRefreshed(new ArrayList<>(window));
+        });
+    }
+
+    // Reloads the notes the window holds after the notes table changed, starting from its
+    // first note (or the newest note when the window is at the top). Only the notes that
+    // were added, edited or removed are reported; nothing is reported if the rows are
+    // unchanged. Page loads in flight are dropped and retried on the next bind.
+    public void reload() {
+        final int requestGeneration = ++generation;
+        loadingBefore = false;
+        loadingAfter = false;
+        final int limit = Math.max(window.size(), PAGE_SIZE);
+        RepositoryCallback<List<NoteListItem>> callback = page -> {
+            if (requestGeneration != generation || page == null) {
+                return;
+            }
+            hasMoreAfter = page.size() == limit;
+
+            Map<String, NoteListItem> previous = new HashMap<>();
+            for (NoteListItem note : window) {
+                previous.put(note.getId(), note);
+            }
+            List<NoteListItem> changed = new ArrayList<>();
+            Set<String> ids = new HashSet<>();
+            for (NoteListItem note : page) {
+                ids.add(note.getId());
+                NoteListItem old = previous.get(note.getId());
+                if (old == null || !NoteAdapter.DIFF_CALLBACK.areContentsTheSame(old, note)) {
+                    changed.add(note);
+                }
+            }
+            List<NoteListItem> removed = new ArrayList<>();
+            for (NoteListItem note : window) {
+                if (!ids.contains(note.getId())) {
+                    removed.add(note);
+                }
+            }
+            if (changed.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+
+            window.clear();
+            window.addAll(page);
+            Log.d(TAG, "reload: " + changed.size() + " notes changed, " + removed.size() + " removed");
+            listener.onWindowChanged(new ArrayList<>(window), changed, removed);
+        };
+        if (hasMoreBefore && !window.isEmpty()) {
+            noteRepository.getNotesPageFromAsync(window.get(0), limit, callback);
+        } else {
+            noteRepository.getFirstNotesPageAsync(limit, callback);
+        }
+    }
+
+    // Called whenever a note is bound; loads the next page before the user reaches an edge.
+    // Notes are matched by id because the adapter's list may still lag behind the window
+    // while a diff is being computed.
+    public void onItemAccessed(NoteListItem note) {
+        int edge = Math.min(PREFETCH_DISTANCE, window.size());
+        for (int i = 0; i < edge; i++) {
+            if (window.get(window.size() - 1 - i).getId().equals(note.getId())) {
+                loadAfter();
+                break;
+            }
+        }
+        for (int i = 0; i < edge; i++) {
+            if (window.get(i).getId().equals(note.getId())) {
+                loadBefore();
+                break;
+            }
+        }
+    }
+
+    private void loadAfter() {
+        if (!hasMoreAfter || loadingAfter || window.isEmpty()) {
+            return;
+        }
+        final int requestGeneration = generation;
+        loadingAfter = true;
+        NoteListItem last = window.get(window.size() - 1);
+        noteRepository.getNotesPageAfterAsync(last, PAGE_SIZE, page -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loadingAfter = false;
+            if (page == null) {
+                return;
+            }
+            hasMoreAfter = page.size() == PAGE_SIZE;
+            if (page.isEmpty()) {
+                return;
+            }
+
+            window.addAll(page);
+
+            // Drop the oldest page at the top once the window is full
+            List<NoteListItem> dropped = new ArrayList<>();
+            if (window.size() > MAX_PAGES * PAGE_SIZE) {
+                dropped.addAll(window.subList(0, PAGE_SIZE));
+                window.subList(0, PAGE_SIZE).clear();
+                hasMoreBefore = true;
+            }
+            listener.onWindowChanged(new ArrayList<>(window), page, dropped);
+        });
+    }
+
+    private void loadBefore() {
+        if (!hasMoreBefore || loadingBefore || window.isEmpty()) {
+            return;
+        }
+        final int requestGeneration = generation;
+        loadingBefore = true;
+        NoteListItem first = window.get(0);
+        noteRepository.getNotesPageBeforeAsync(first, PAGE_SIZE, page -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loadingBefore = false;
+            if (page == null) {
+                return;
+            }
+            hasMoreBefore = page.size() == PAGE_SIZE;
+            if (page.isEmpty()) {
+                return;
+            }
+
+            window.addAll(0, page);
+
+            // Drop the page at the bottom once the window is full
+            List<NoteListItem> dropped = new ArrayList<>();
+            if (window.size() > MAX_PAGES * PAGE_SIZE) {
+                int start = window.size() - PAGE_SIZE;
+                dropped.addAll(window.subList(start, window.size()));
+                window.subList(start, window.size()).clear();
+                hasMoreAfter = true;
+            }
+            listener.onWindowChanged(new ArrayList<>(window), page, dropped);
+        });
+    }
+}
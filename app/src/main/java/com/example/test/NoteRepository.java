@@ -1,25 +1,52 @@
 package com.example.test;
 
 import android.app.Application;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 public class NoteRepository {
     private static final String TAG = "NoteRepository";
+    
+    // Stay below SQLite's default limit of 999 bound parameters per statement
+    private static final int MAX_QUERY_PARAMS = 900;
+    
+    // Commits that land within this interval are reported to observers as one change
+    private static final long CHANGE_DEBOUNCE_MS = 100;
+    
     private NoteDao noteDao;
+    private MediaDao mediaDao;
     private NoteDatabase database;
+    private Application application;
+    private NoteWriteBuffer writeBuffer;
     
     public NoteRepository(Application application) {
         database = NoteDatabase.getDatabase(application);
         noteDao = database.noteDao();
+        mediaDao = database.mediaDao();
+        writeBuffer = NoteWriteBuffer.getInstance(application);
+        this.application = application;
     }
     
     public boolean insert(Note note) {
         try {
-            Log.d(TAG, "Inserting note: " + note.getContent());
-            noteDao.insert(note);
+            Log.d(TAG, "Inserting note: " + note.getId());
+            noteDao.upsert(note);
             Log.d(TAG, "Note inserted successfully into database: " + note.getId());
             return true;
         } catch (Exception e) {
@@ -30,7 +57,7 @@ public class NoteRepository {
     
     public void update(Note note) {
         try {
-            Log.d(TAG, "Updating note: " + note.getContent());
+            Log.d(TAG, "Updating note: " + note.getId());
             noteDao.update(note);
         } catch (Exception e) {
             Log.e(TAG, "Error updating note", e);
@@ -38,11 +65,17 @@ public class NoteRepository {
     }
     
     public boolean delete(Note note) {
+        return deleteById(note.getId());
+    }
+    
+    public boolean deleteById(String noteId) {
         try {
-            Log.d(TAG, "Deleting note: " + note.getContent() + " with ID: " + note.getId());
-            // Use deleteById for more reliable deletion
-            noteDao.deleteById(note.getId());
+            Log.d(TAG, "Deleting note with ID: " + noteId);
+            writeBuffer.discard(noteId);
+            noteDao.deleteById(noteId);
             Log.d(TAG, "Note deleted successfully from database");
+            // The cascade removed the media rows but not their files
+            MediaGarbageCollector.getInstance(application).requestRun();
             return true;
         } catch (Exception e) {
             Log.e(TAG, "Error deleting note", e);
@@ -53,12 +86,94 @@ public class NoteRepository {
     public void deleteAllNotes() {
         try {
             Log.d(TAG, "Deleting all notes");
+            writeBuffer.discardAll();
             noteDao.deleteAllNotes();
+            MediaGarbageCollector.getInstance(application).requestRun();
         } catch (Exception e) {
             Log.e(TAG, "Error deleting all notes", e);
         }
     }
     
+    // Bulk writes: each call is a single transaction instead of one commit per row
+    
+    public boolean insert(List<Note> notes) {
+        try {
+            Log.d(TAG, "Inserting " + notes.size() + " notes");
+            noteDao.upsert(notes);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error inserting notes", e);
+            return false;
+        }
+    }
+    
+    public void update(List<Note> notes) {
+        try {
+            Log.d(TAG, "Updating " + notes.size() + " notes");
+            noteDao.update(notes);
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating notes", e);
+        }
+    }
+    
+    // Deletes the notes and, through the foreign key cascade, their media rows in one
+    // transaction; the media files are left to MediaGarbageCollector
+    public boolean delete(List<Note> notes) {
+        try {
+            Log.d(TAG, "Deleting " + notes.size() + " notes");
+            for (Note note : notes) {
+                writeBuffer.discard(note.getId());
+            }
+            database.runInTransaction(() -> {
+                for (int start = 0; start < notes.size(); start += MAX_QUERY_PARAMS) {
+                    List<String> noteIds = new ArrayList<>();
+                    for (Note note : notes.subList(start, Math.min(start + MAX_QUERY_PARAMS, notes.size()))) {
+                        noteIds.add(note.getId());
+                    }
+                    noteDao.deleteByIds(noteIds);
+                }
+            });
+            MediaGarbageCollector.getInstance(application).requestRun();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error deleting notes", e);
+            return false;
+        }
+    }
+    
+    // Saves a note together with its media rows: either both are written or neither is.
+    // The media files must already be stored, e.g. by MediaRepository. An existing note
+    // is updated in place, keeping the media it already has; media rows that exist are
+    // updated as well, so their blobs are not counted twice.
+    public boolean saveNoteWithMedia(Note note, List<Media> mediaList) {
+        try {
+            Log.d(TAG, "Saving note " + note.getId() + " with " + mediaList.size() + " media items");
+            database.runInTransaction(() -> {
+                noteDao.upsert(note);
+                mediaDao.upsert(mediaList);
+            });
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving note with media", e);
+            return false;
+        }
+    }
+    
+    // Autosave: drafts go through the shared write-behind buffer, so edits to the same
+    // note are coalesced and written in batches instead of once per keystroke
+    
+    public void saveDraft(Note note) {
+        writeBuffer.put(note);
+    }
+    
+    public void discardDraft(String noteId) {
+        writeBuffer.discard(noteId);
+    }
+    
+    public Future<Boolean> flushDrafts(RepositoryCallback<Boolean> callback) {
+        return writeBuffer.flush(callback);
+    }
+    
     public List<Note> getAllNotes() {
         try {
             List<Note> notes = noteDao.getAllNotes();
@@ -70,15 +185,315 @@ public class NoteRepository {
         }
     }
     
-    public List<Note> searchNotes(String query) {
+    // The full note with its body, for editing. An edit still waiting in the write
+    // buffer is newer than the row, so it is returned instead.
+    public Note getNoteById(String noteId) {
+        try {
+            Note pending = writeBuffer.getPending(noteId);
+            return pending != null ? pending : noteDao.getNoteById(noteId);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting note " + noteId, e);
+            return null;
+        }
+    }
+    
+    // The list pages below return NoteListItem projections, without the note bodies
+    
+    public List<NoteListItem> getFirstNotesPage(int pageSize) {
+        try {
+            return noteDao.getFirstNotesPage(pageSize);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting first notes page", e);
+            return null;
+        }
+    }
+    
+    // The page of older notes that follows the given note in the list
+    public List<NoteListItem> getNotesPageAfter(NoteListItem last, int pageSize) {
+        try {
+            return noteDao.getNotesPageAfter(last.getTimestamp(), last.getId(), pageSize);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting notes page", e);
+            return null;
+        }
+    }
+    
+    // The page that starts with the given note, e.g. to reload a window after a change
+    public List<NoteListItem> getNotesPageFrom(NoteListItem first, int pageSize) {
+        try {
+            return noteDao.getNotesPageFrom(first.getTimestamp(), first.getId(), pageSize);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting notes page", e);
+            return null;
+        }
+    }
+    
+    // The page of newer notes that precedes the given note, in list order
+    public List<NoteListItem> getNotesPageBefore(NoteListItem first, int pageSize) {
+        try {
+            List<NoteListItem> page = noteDao.getNotesPageBefore(first.getTimestamp(), first.getId(), pageSize);
+            Collections.reverse(page);
+            return page;
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting notes page", e);
+            return null;
+        }
+    }
+    
+    // The newest notes written in [from, to), e.g. one day of notes
+    public List<NoteListItem> getNotesBetween(long from, long to, int limit) {
+        try {
+            return noteDao.getNotesBetween(from, to, limit);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting notes between " + from + " and " + to, e);
+            return null;
+        }
+    }
+    
+    // Ranked, prefix-aware full-text search over note content
+    public List<NoteSearchResult> searchNotes(String query) {
         try {
             Log.d(TAG, "Searching notes with query: " + query);
-            List<Note> notes = noteDao.searchNotes(query);
-            Log.d(TAG, "Search found " + (notes != null ? notes.size() : 0) + " notes");
-            return notes;
+            String ftsQuery = buildFtsQuery(query);
+            if (ftsQuery.isEmpty()) {
+                return new ArrayList<>();
+            }
+            
+            List<NoteSearchResult> results = rankResults(noteDao.searchNotes(ftsQuery));
+            Log.d(TAG, "Search found " + results.size() + " notes");
+            return results;
         } catch (Exception e) {
             Log.e(TAG, "Error searching notes", e);
             return null;
         }
     }
+    
+    // Asynchronous API: each call runs the synchronous method above on the database
+    // executor and reports its result on the main thread. Writes go to the single writer
+    // thread, reads to the read pool
+    
+    public Future<Boolean> insertAsync(Note note, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> insert(note), callback);
+    }
+    
+    public Future<Void> updateAsync(Note note, RepositoryCallback<Void> callback) {
+        return NoteDatabase.executeWrite(() -> {
+            update(note);
+            return null;
+        }, callback);
+    }
+    
+    public Future<Boolean> deleteAsync(Note note, RepositoryCallback<Boolean> callback) {
+        return deleteByIdAsync(note.getId(), callback);
+    }
+    
+    public Future<Boolean> deleteByIdAsync(String noteId, RepositoryCallback<Boolean> callback) {
+        // Dropped now as well, so a flush requested before the delete runs cannot write it back
+        writeBuffer.discard(noteId);
+        return NoteDatabase.executeWrite(() -> deleteById(noteId), callback);
+    }
+    
+    public Future<Void> deleteAllNotesAsync(RepositoryCallback<Void> callback) {
+        return NoteDatabase.executeWrite(() -> {
+            deleteAllNotes();
+            return null;
+        }, callback);
+    }
+    
+    public Future<Boolean> insertAsync(List<Note> notes, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> insert(notes), callback);
+    }
+    
+    public Future<Void> updateAsync(List<Note> notes, RepositoryCallback<Void> callback) {
+        return NoteDatabase.executeWrite(() -> {
+            update(notes);
+            return null;
+        }, callback);
+    }
+    
+    public Future<Boolean> deleteAsync(List<Note> notes, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> delete(notes), callback);
+    }
+    
+    public Future<Boolean> saveNoteWithMediaAsync(Note note, List<Media> mediaList, RepositoryCallback<Boolean> callback) {
+        return NoteDatabase.executeWrite(() -> saveNoteWithMedia(note, mediaList), callback);
+    }
+    
+    public Future<List<Note>> getAllNotesAsync(RepositoryCallback<List<Note>> callback) {
+        return NoteDatabase.executeAsync(this::getAllNotes, callback);
+    }
+    
+    public Future<Note> getNoteByIdAsync(String noteId, RepositoryCallback<Note> callback) {
+        return NoteDatabase.executeAsync(() -> getNoteById(noteId), callback);
+    }
+    
+    public Future<List<NoteListItem>> getFirstNotesPageAsync(int pageSize, RepositoryCallback<List<NoteListItem>> callback) {
+        return NoteDatabase.executeAsync(() -> getFirstNotesPage(pageSize), callback);
+    }
+    
+    public Future<List<NoteListItem>> getNotesPageAfterAsync(NoteListItem last, int pageSize, RepositoryCallback<List<NoteListItem>> callback) {
+        return NoteDatabase.executeAsync(() -> getNotesPageAfter(last, pageSize), callback);
+    }
+    
+    public Future<List<NoteListItem>> getNotesPageFromAsync(NoteListItem first, int pageSize, RepositoryCallback<List<NoteListItem>> callback) {
+        return NoteDatabase.executeAsync(() -> getNotesPageFrom(first, pageSize), callback);
+    }
+    
+    public Future<List<NoteListItem>> getNotesPageBeforeAsync(NoteListItem first, int pageSize, RepositoryCallback<List<NoteListItem>> callback) {
+        return NoteDatabase.executeAsync(() -> getNotesPageBefore(first, pageSize), callback);
+    }
+    
+    public Future<List<NoteListItem>> getNotesBetweenAsync(long from, long to, int limit, RepositoryCallback<List<NoteListItem>> callback) {
+        return NoteDatabase.executeAsync(() -> getNotesBetween(from, to, limit), callback);
+    }
+    
+    public Future<List<NoteSearchResult>> searchNotesAsync(String query, RepositoryCallback<List<NoteSearchResult>> callback) {
+        return NoteDatabase.executeAsync(() -> searchNotes(query), callback);
+    }
+    
+    // Change notifications: Room's invalidation tracker reports every committed write to
+    // the notes or media table, whichever component made it. The callback receives the
+    // names of the changed tables on the main thread.
+    
+    public ChangeObserver addChangeObserver(RepositoryCallback<Set<String>> callback) {
+        ChangeObserver observer = new ChangeObserver(callback);
+        database.getInvalidationTracker().addObserver(observer);
+        return observer;
+    }
+    
+    public void removeChangeObserver(ChangeObserver observer) {
+        database.getInvalidationTracker().removeObserver(observer);
+        observer.cancel();
+    }
+    
+    // Collects the tables invalidated during CHANGE_DEBOUNCE_MS and reports them at once,
+    // so a burst of commits (an autosave, then its media) causes a single reload
+    public static class ChangeObserver extends InvalidationTracker.Observer {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final RepositoryCallback<Set<String>> callback;
+        private final Set<String> changedTables = new HashSet<>();
+        private final Runnable deliver = this::deliver;
+        
+        ChangeObserver(RepositoryCallback<Set<String>> callback) {
+            super("notes", "media");
+            this.callback = callback;
+        }
+        
+        // Called on Room's background thread after the transaction commits
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            boolean schedule;
+            synchronized (changedTables) {
+                schedule = changedTables.isEmpty();
+                changedTables.addAll(tables);
+            }
+            if (schedule) {
+                handler.postDelayed(deliver, CHANGE_DEBOUNCE_MS);
+            }
+        }
+        
+        private void deliver() {
+            Set<String> tables;
+            synchronized (changedTables) {
+                tables = new HashSet<>(changedTables);
+                changedTables.clear();
+            }
+            if (!tables.isEmpty()) {
+                Log.d(TAG, "Tables changed: " + tables);
+                callback.onComplete(tables);
+            }
+        }
+        
+        void cancel() {
+            handler.removeCallbacks(deliver);
+            synchronized (changedTables) {
+                changedTables.clear();
+            }
+        }
+    }
+    
+    // Turns free text into an FTS4 MATCH expression: every word becomes a prefix term
+    // ("meet tom" -> "meet* tom*"), and FTS operators/quotes typed by the user are dropped.
+    static String buildFtsQuery(String query) {
+        StringBuilder ftsQuery = new StringBuilder();
+        for (String token : tokenize(query)) {
+            if (ftsQuery.length() > 0) {
+                ftsQuery.append(' ');
+            }
+            ftsQuery.append(token).append('*');
+        }
+        return ftsQuery.toString();
+    }
+    
+    // Splits a query into the words the full-text search matches on
+    static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        if (query == null) {
+            return tokens;
+        }
+        
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(query.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(query.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                tokens.add(query.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+    
+    // Orders results by relevance: for every phrase, the share of all its hits that fall
+    // in this note (the rank function from the SQLite FTS docs), newest first on ties.
+    private static List<NoteSearchResult> rankResults(List<NoteSearchResult> results) {
+        List<NoteSearchResult> ranked = new ArrayList<>();
+        if (results == null || results.isEmpty()) {
+            return ranked;
+        }
+        
+        Map<String, Double> scores = new HashMap<>();
+        for (NoteSearchResult result : results) {
+            scores.put(result.getItem().getId(), score(result.getMatchInfo()));
+            ranked.add(result);
+        }
+        
+        Collections.sort(ranked, (a, b) -> {
+            int byScore = Double.compare(scores.get(b.getItem().getId()), scores.get(a.getItem().getId()));
+            return byScore != 0 ? byScore : Long.compare(b.getItem().getTimestamp(), a.getItem().getTimestamp());
+        });
+        return ranked;
+    }
+    
+    private static double score(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 8) {
+            return 0;
+        }
+        
+        // matchinfo 'pcx' layout: phrase count, column count, then for each phrase/column
+        // pair: hits in this row, hits in all rows, rows with at least one hit
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = info.get(0);
+        int columnCount = info.get(1);
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int base = 2 + (phrase * columnCount + column) * 3;
+                if (base + 1 >= info.limit()) {
+                    return score;
+                }
+                int hitsInRow = info.get(base);
+                int hitsInAllRows = info.get(base + 1);
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    score += (double) hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.example.test;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+// Turns search box edits into searches: input is debounced, a new query cancels any search
+// still queued for an older one, and only the results of the latest query are published.
+// When a query extends the previous one ("mee" -> "meet"), its matches must be a subset of
+// the previous matches, so those are filtered in memory instead of querying the database.
+// All public methods must be called on the main thread.
+public class NoteSearchPipeline {
+    private static final String TAG = "NoteSearchPipeline";
+
+    static final long DEBOUNCE_MS = 250;
+
+    public interface Listener {
+        void onSearchResults(String query, List<NoteListItem> results);
+        void onSearchCleared();
+    }
+
+    private final NoteRepository noteRepository;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Runnable pendingSearch;
+    private Future<List<NoteSearchResult>> runningSearch;
+    private int latestGeneration;
+
+    // Query and results last published, reused by queries that extend it
+    private String lastQuery;
+    private List<NoteSearchResult> lastResults;
+
+    public NoteSearchPipeline(NoteRepository noteRepository, Listener listener) {
+        this.noteRepository = noteRepository;
+        this.listener = listener;
+    }
+
+    public void onQueryChanged(CharSequence text) {
+        String query = text != null ? text.toString().trim() : "";
+        final int generation = ++latestGeneration;
+        cancelPending();
+
+        if (NoteRepository.tokenize(query).isEmpty()) {
+            lastQuery = null;
+            lastResults = null;
+            listener.onSearchCleared();
+            return;
+        }
+
+        pendingSearch = () -> search(query, generation);
+        handler.postDelayed(pendingSearch, DEBOUNCE_MS);
+    }
+
+    // Stops any queued search and drops results still in flight
+    public void cancel() {
+        latestGeneration++;
+        cancelPending();
+    }
+
+    private void cancelPending() {
+        if (pendingSearch != null) {
+            handler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        if (runningSearch != null) {
+            // A query already running in SQLite finishes, but its result is ignored
+            runningSearch.cancel(false);
+            runningSearch = null;
+        }
+    }
+
+    private void search(String query, int generation) {
+        pendingSearch = null;
+        final String previousQuery = lastQuery;
+        final List<NoteSearchResult> previousResults = lastResults;
+
+        runningSearch = NoteDatabase.executeAsync(() -> {
+            if (previousResults != null && query.startsWith(previousQuery)) {
+                Log.d(TAG, "Refining " + previousResults.size() + " results of \"" + previousQuery + "\"");
+                return refine(previousResults, query);
+            }
+            return noteRepository.searchNotes(query);
+        }, results -> {
+            if (generation != latestGeneration || results == null) {
+                return;
+            }
+            runningSearch = null;
+            lastQuery = query;
+            lastResults = results;
+            List<NoteListItem> items = new ArrayList<>(results.size());
+            for (NoteSearchResult result : results) {
+                items.add(result.getItem());
+            }
+            listener.onSearchResults(query, items);
+        });
+    }
+
+    // Keeps the notes where every query word starts a word of the content, which is how
+    // the full-text prefix query matches. The matchers compare in place, so no lowercase
+    // copy of any note is made. They run on the indexed search text, which holds the same
+    // words as the body without having to inflate it.
+    static List<NoteSearchResult> refine(List<NoteSearchResult> results, String query) {
+        List<CaseInsensitiveMatcher> matchers = new ArrayList<>();
+        for (String token : NoteRepository.tokenize(query)) {
+            matchers.add(new CaseInsensitiveMatcher(token));
+        }
+
+        List<NoteSearchResult> refined = new ArrayList<>();
+        for (NoteSearchResult result : results) {
+            String content = result.getSearchText();
+            if (content != null && containsAllWordPrefixes(content, matchers)) {
+                refined.add(result);
+            }
+        }
+        return refined;
+    }
+
+    private static boolean containsAllWordPrefixes(String content, List<CaseInsensitiveMatcher> matchers) {
+        for (int i = 0; i < matchers.size(); i++) {
+            if (!matchers.get(i).isWordPrefixIn(content)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
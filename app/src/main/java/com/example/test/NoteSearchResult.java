@@ -0,0 +1,43 @@
+package com.example.test;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+// A note matched by a full-text query together with its raw FTS4 matchinfo('pcx') blob,
+// which NoteRepository uses to rank the results, and its search text, which
+// NoteSearchPipeline filters when the query is extended.
+public class NoteSearchResult {
+
+    @Embedded
+    private NoteListItem item;
+
+    @ColumnInfo(name = "search_text")
+    private String searchText;
+
+    @ColumnInfo(name = "match_info")
+    private byte[] matchInfo;
+
+    public NoteListItem getItem() {
+        return item;
+    }
+
+    public void setItem(NoteListItem item) {
+        this.item = item;
+    }
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public void setSearchText(String searchText) {
+        this.searchText = searchText;
+    }
+
+    public byte[] getMatchInfo() {
+        return matchInfo;
+    }
+
+    public void setMatchInfo(byte[] matchInfo) {
+        this.matchInfo = matchInfo;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.test;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+// Write-behind buffer for note edits made while typing. Each edit replaces the pending
+// version of the same note, so a burst of keystrokes costs one row write. Pending notes
+// are written in a single transaction on the write executor when typing pauses for
+// IDLE_FLUSH_MS, when the buffer grows past MAX_PENDING_NOTES or MAX_PENDING_CHARS, and
+// whenever flush is called (dialog closed, save tapped, app sent to the background).
+public class NoteWriteBuffer {
+    private static final String TAG = "NoteWriteBuffer";
+
+    private static final long IDLE_FLUSH_MS = 1_000;
+    private static final int MAX_PENDING_NOTES = 32;
+    private static final int MAX_PENDING_CHARS = 64 * 1024;
+
+    private static volatile NoteWriteBuffer INSTANCE;
+
+    private final NoteDao noteDao;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable idleFlush = this::flush;
+
+    // Guarded by this; insertion order is kept so notes are written in the order edited
+    private final Map<String, Note> pending = new LinkedHashMap<>();
+    private int pendingChars;
+
+    private NoteWriteBuffer(Context context) {
+        this.noteDao = NoteDatabase.getDatabase(context.getApplicationContext()).noteDao();
+    }
+
+    public static NoteWriteBuffer getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (NoteWriteBuffer.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new NoteWriteBuffer(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Queues the note for writing, replacing any pending version with the same id
+    public void put(Note note) {
+        boolean full;
+        synchronized (this) {
+            Note previous = pending.remove(note.getId());
+            if (previous != null) {
+                pendingChars -= length(previous);
+            }
+            pending.put(note.getId(), note);
+            pendingChars += length(note);
+            full = pending.size() >= MAX_PENDING_NOTES || pendingChars >= MAX_PENDING_CHARS;
+        }
+
+        handler.removeCallbacks(idleFlush);
+        if (full) {
+            flush();
+        } else {
+            handler.postDelayed(idleFlush, IDLE_FLUSH_MS);
+        }
+    }
+
+    // Drops a pending edit, e.g. because the note is about to be deleted
+    public synchronized void discard(String noteId) {
+        Note previous = pending.remove(noteId);
+        if (previous != null) {
+            pendingChars -= length(previous);
+        }
+    }
+
+    public synchronized void discardAll() {
+        pending.clear();
+        pendingChars = 0;
+    }
+
+    // The version of the note that has not been written yet, or null
+    public synchronized Note getPending(String noteId) {
+        return pending.get(noteId);
+    }
+
+    public Future<Boolean> flush() {
+        return flush(null);
+    }
+
+    // Writes everything pending in one transaction. The write executor runs tasks in
+    // order, so a delete or update queued after this call sees the flushed rows.
+    public Future<Boolean> flush(RepositoryCallback<Boolean> callback) {
+        handler.removeCallbacks(idleFlush);
+        List<Note> notes;
+        synchronized (this) {
+            notes = new ArrayList<>(pending.values());
+            pending.clear();
+            pendingChars = 0;
+        }
+        return NoteDatabase.executeWrite(() -> write(notes), callback);
+    }
+
+    private boolean write(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return true;
+        }
+        try {
+            // Upsert rather than insert with REPLACE: REPLACE deletes the old row first,
+            // which would cascade to the note's media
+            noteDao.upsert(notes);
+            Log.d(TAG, "Flushed " + notes.size() + " notes");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error flushing " + notes.size() + " notes", e);
+            requeue(notes);
+            return false;
+        }
+    }
+
+    // Puts failed notes back for the next flush, unless they were edited again meanwhile
+    private synchronized void requeue(List<Note> notes) {
+        for (Note note : notes) {
+            if (!pending.containsKey(note.getId())) {
+                pending.put(note.getId(), note);
+                pendingChars += length(note);
+            }
+        }
+    }
+
+    private static int length(Note note) {
+        return note.getContent() != null ? note.getContent().length() : 0;
+    }
+}
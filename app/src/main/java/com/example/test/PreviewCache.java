@@ -0,0 +1,225 @@
+package com.example.test;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// App-wide cache of the square preview bitmaps shown in media tiles, shared by every
+// MediaAdapter and by MediaViewerActivity. The memory tier is an LRU bounded in bytes and
+// is looked up on the main thread without any file access. The disk tier lives in the
+// cache directory under keys made of the media id and the source file's modification time,
+// so a changed file never serves an old preview. Media that already has a thumbnail file
+// uses that file as its disk copy instead of storing a second one.
+public class PreviewCache {
+    private static final String TAG = "PreviewCache";
+
+    private static final String DISK_DIRECTORY = "previews";
+    private static final long MAX_DISK_BYTES = 32L * 1024 * 1024;
+    private static final int LOADER_THREADS = 2;
+
+    private static volatile PreviewCache INSTANCE;
+
+    private final File diskDirectory;
+    private final LruCache<String, Entry> memoryCache;
+    private final ExecutorService loader;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // The source path is kept so that a media whose thumbnail was created after the
+    // preview was cached doesn't keep showing the old preview
+    private static class Entry {
+        final String sourcePath;
+        final Bitmap bitmap;
+
+        Entry(String sourcePath, Bitmap bitmap) {
+            this.sourcePath = sourcePath;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private PreviewCache(Context context) {
+        this.diskDirectory = new File(context.getApplicationContext().getCacheDir(), DISK_DIRECTORY);
+
+        // An eighth of the heap holds about 100 previews on a 256 MB heap
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        this.memoryCache = new LruCache<String, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.bitmap.getAllocationByteCount();
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(LOADER_THREADS, runnable ->
+                new Thread(runnable, "preview-" + threadCount.incrementAndGet()));
+    }
+
+    public static PreviewCache getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (PreviewCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new PreviewCache(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Memory tier only; safe to call while binding
+    public Bitmap getFromMemory(Media media) {
+        Entry entry = memoryCache.get(media.getId());
+        if (entry != null && entry.sourcePath.equals(sourcePathOf(media))) {
+            memoryHits.incrementAndGet();
+            return entry.bitmap;
+        }
+        return null;
+    }
+
+    // Any preview held for the media id, even one made from an older source file. Used as
+    // a placeholder while the full-size media loads.
+    public Bitmap peek(String mediaId) {
+        Entry entry = memoryCache.get(mediaId);
+        return entry != null ? entry.bitmap : null;
+    }
+
+    // Loads the preview from the disk tier, or decodes and stores it, on a background
+    // thread. The callback runs on the main thread and receives null if the media file is
+    // missing or can't be decoded.
+    public Future<Bitmap> load(Media media, RepositoryCallback<Bitmap> callback) {
+        return NoteDatabase.executeAsync(loader, () -> loadBlocking(media), callback);
+    }
+
+    private Bitmap loadBlocking(Media media) {
+        String sourcePath = sourcePathOf(media);
+        File source = new File(sourcePath);
+        long lastModified = source.lastModified();
+        if (lastModified == 0) {
+            Log.e(TAG, "Media file does not exist: " + sourcePath);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Bitmap bitmap;
+        if (media.getThumbnailUri() != null) {
+            // The thumbnail file is already preview-sized
+            bitmap = BitmapFactory.decodeFile(sourcePath);
+            diskHits.incrementAndGet();
+        } else {
+            File diskFile = new File(diskDirectory, diskKey(media.getId(), lastModified));
+            bitmap = diskFile.exists() ? BitmapFactory.decodeFile(diskFile.getAbsolutePath()) : null;
+            if (bitmap != null) {
+                diskHits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                bitmap = media.getType() == Media.TYPE_VIDEO
+                        ? ThumbnailGenerator.decodeVideoThumbnail(source)
+                        : ThumbnailGenerator.decodeImageThumbnail(source);
+                if (bitmap != null) {
+                    writeToDisk(media.getId(), diskFile, bitmap);
+                }
+            }
+        }
+
+        if (bitmap != null) {
+            memoryCache.put(media.getId(), new Entry(sourcePath, bitmap));
+        }
+        return bitmap;
+    }
+
+    private void writeToDisk(String mediaId, File diskFile, Bitmap bitmap) {
+        if (!diskDirectory.exists()) {
+            diskDirectory.mkdirs();
+        }
+
+        // Previews made from an older version of the file are no longer reachable
+        File[] stale = diskDirectory.listFiles((dir, name) -> name.startsWith(mediaId + "_"));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+
+        try (FileOutputStream out = new FileOutputStream(diskFile)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing preview to disk", e);
+            diskFile.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    // Deletes the least recently written previews once the disk tier is over its budget
+    private void trimDisk() {
+        File[] files = diskDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= MAX_DISK_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // Share of lookups answered from either tier without decoding the media file
+    public double getHitRate() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "PreviewCache{memoryHits=%d, diskHits=%d, misses=%d, hitRate=%.2f, memory=%d/%d bytes}",
+                memoryHits.get(), diskHits.get(), misses.get(), getHitRate(), memoryCache.size(), memoryCache.maxSize());
+    }
+
+    private static String sourcePathOf(Media media) {
+        return media.getThumbnailUri() != null ? media.getThumbnailUri() : media.getUri();
+    }
+
+    private static String diskKey(String mediaId, long lastModified) {
+        return mediaId + "_" + lastModified + ".jpg";
+    }
+}
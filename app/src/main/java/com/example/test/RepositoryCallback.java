@@ -0,0 +1,6 @@
+package com.example.test;
+
+// Receives the result of an asynchronous repository call on the main thread
+public interface RepositoryCallback<T> {
+    void onComplete(T result);
+}
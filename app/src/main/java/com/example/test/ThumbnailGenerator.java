@@ -0,0 +1,164 @@
+package com.example.test;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.media.ThumbnailUtils;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.util.Size;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Creates the small square JPEGs shown in media tiles. Images are decoded with an
+// inSampleSize chosen from their bounds, so a 12 MP photo is never fully decoded, then
+// center-cropped to THUMBNAIL_SIZE and rotated according to their EXIF orientation.
+public final class ThumbnailGenerator {
+    private static final String TAG = "ThumbnailGenerator";
+
+    // Large enough for the biggest tile on xxxhdpi screens
+    static final int THUMBNAIL_SIZE = 320;
+    private static final int JPEG_QUALITY = 85;
+
+    private ThumbnailGenerator() {
+    }
+
+    // Writes a thumbnail of the image to target; returns false if the image can't be decoded
+    public static boolean createImageThumbnail(File source, File target) {
+        return write(decodeImageThumbnail(source), target);
+    }
+
+    // Writes a thumbnail of a frame from the video to target; returns false if no frame
+    // can be extracted. This runs a hardware decoder and can take hundreds of milliseconds.
+    public static boolean createVideoThumbnail(File source, File target) {
+        return write(decodeVideoThumbnail(source), target);
+    }
+
+    // Decodes a THUMBNAIL_SIZE square of the image, or returns null if it can't be decoded
+    public static Bitmap decodeImageThumbnail(File source) {
+        Bitmap bitmap = null;
+        Bitmap result = null;
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                Log.e(TAG, "Cannot read image bounds: " + source.getAbsolutePath());
+                return null;
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, THUMBNAIL_SIZE);
+            bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+            if (bitmap == null) {
+                Log.e(TAG, "Cannot decode image: " + source.getAbsolutePath());
+                return null;
+            }
+            Log.d(TAG, "Decoded with inSampleSize " + options.inSampleSize
+                    + " for " + options.outWidth + "x" + options.outHeight + " image");
+
+            result = rotate(ThumbnailUtils.extractThumbnail(bitmap, THUMBNAIL_SIZE, THUMBNAIL_SIZE),
+                    readRotation(source));
+            return result;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error decoding image thumbnail", e);
+            return null;
+        } finally {
+            // extractThumbnail returns the decoded bitmap itself when it is already the right size
+            if (bitmap != null && bitmap != result) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    // Decodes a THUMBNAIL_SIZE square from a frame of the video, or returns null
+    public static Bitmap decodeVideoThumbnail(File source) {
+        Bitmap frame = null;
+        Bitmap result = null;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                frame = ThumbnailUtils.createVideoThumbnail(source, new Size(THUMBNAIL_SIZE, THUMBNAIL_SIZE), null);
+            } else {
+                frame = ThumbnailUtils.createVideoThumbnail(source.getAbsolutePath(),
+                        MediaStore.Images.Thumbnails.MINI_KIND);
+            }
+            if (frame == null) {
+                Log.e(TAG, "No frame extracted from video: " + source.getAbsolutePath());
+                return null;
+            }
+            result = ThumbnailUtils.extractThumbnail(frame, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error decoding video thumbnail", e);
+            return null;
+        } finally {
+            if (frame != null && frame != result) {
+                frame.recycle();
+            }
+        }
+    }
+
+    // Compresses the bitmap to target and recycles it
+    private static boolean write(Bitmap thumbnail, File target) {
+        if (thumbnail == null) {
+            return false;
+        }
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing thumbnail", e);
+            target.delete();
+            return false;
+        } finally {
+            thumbnail.recycle();
+        }
+    }
+
+    // Largest power of two that keeps both sides at least targetSize, as BitmapFactory
+    // rounds inSampleSize down to a power of two anyway
+    static int calculateInSampleSize(int width, int height, int targetSize) {
+        int inSampleSize = 1;
+        int shortSide = Math.min(width, height);
+        while (shortSide / (inSampleSize * 2) >= targetSize) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private static int readRotation(File source) {
+        try {
+            ExifInterface exif = new ExifInterface(source.getAbsolutePath());
+            switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "No EXIF data for " + source.getAbsolutePath());
+            return 0;
+        }
+    }
+
+    private static Bitmap rotate(Bitmap bitmap, int degrees) {
+        if (degrees == 0) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+}
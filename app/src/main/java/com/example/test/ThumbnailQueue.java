@@ -0,0 +1,205 @@
+package com.example.test;
+
+import android.content.Context;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Creates missing thumbnails in the background so imports don't wait for a decoder.
+// The queue is the media table itself: every row with a NULL thumbnail_uri still needs
+// a thumbnail, so pending work survives process death and resume() picks it up again.
+// Video decoding is limited to as many tasks as the device has hardware decoder instances.
+public class ThumbnailQueue {
+    private static final String TAG = "ThumbnailQueue";
+
+    private static final int MAX_THREADS = 4;
+
+    // Called on the main thread with the updated media once its thumbnail is saved
+    public interface Listener {
+        void onThumbnailReady(Media media);
+    }
+
+    private static volatile ThumbnailQueue INSTANCE;
+
+    private final Context context;
+    private final MediaDao mediaDao;
+    // Created on first use, see executor()
+    private volatile ExecutorService executor;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Media queued or being processed, so the same row is never submitted twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Media whose thumbnail could not be created; retried on the next process start only
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    private ThumbnailQueue(Context context) {
+        this.context = context.getApplicationContext();
+        this.mediaDao = NoteDatabase.getDatabase(this.context).mediaDao();
+    }
+
+    public static ThumbnailQueue getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ThumbnailQueue.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ThumbnailQueue(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Queues a media row that was inserted without a thumbnail
+    public void enqueue(Media media) {
+        if (media.getThumbnailUri() != null || failed.contains(media.getId()) || !pending.add(media.getId())) {
+            return;
+        }
+        executor().execute(() -> process(media));
+    }
+
+    // The pool is sized by enumerating the device's codecs, which is too slow for the main
+    // thread at startup. getInstance and resume() are called from Application.onCreate, so
+    // the pool is only built by the first enqueue, which runs on a background thread:
+    // the database executor for resume() and the media I/O executor for imports.
+    private ExecutorService executor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    int threads = Math.max(1, Math.min(countHardwareDecoderInstances(), MAX_THREADS));
+                    Log.d(TAG, "Creating thumbnails with " + threads + " threads");
+                    AtomicInteger threadCount = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(threads, runnable -> {
+                        Thread thread = new Thread(runnable, "thumbnail-" + threadCount.incrementAndGet());
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    // Queues every row still waiting for a thumbnail, e.g. after the process was killed
+    public void resume() {
+        NoteDatabase.databaseExecutor.execute(() -> {
+            try {
+                List<Media> waiting = mediaDao.getMediaWithoutThumbnail();
+                Log.d(TAG, "Resuming with " + waiting.size() + " media items without thumbnail");
+                for (Media media : waiting) {
+                    enqueue(media);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading media without thumbnail", e);
+            }
+        });
+    }
+
+    private void process(Media media) {
+        try {
+            File source = new File(media.getUri());
+            if (!source.exists()) {
+                Log.e(TAG, "Media file missing, skipping thumbnail: " + source.getAbsolutePath());
+                failed.add(media.getId());
+                return;
+            }
+
+            File target = createThumbnailFile();
+            long start = System.currentTimeMillis();
+            boolean created = media.getType() == Media.TYPE_VIDEO
+                    ? ThumbnailGenerator.createVideoThumbnail(source, target)
+                    : ThumbnailGenerator.createImageThumbnail(source, target);
+            if (!created) {
+                failed.add(media.getId());
+                return;
+            }
+
+            // The row may have been deleted while the thumbnail was being created
+            if (mediaDao.setThumbnailUri(media.getId(), target.getAbsolutePath()) == 0) {
+                Log.d(TAG, "Media was deleted, discarding thumbnail: " + media.getId());
+                target.delete();
+                return;
+            }
+            Log.d(TAG, "Created thumbnail for " + media.getId() + " in " + (System.currentTimeMillis() - start) + " ms");
+
+            Media updated = copyWithThumbnail(media, target.getAbsolutePath());
+            NoteDatabase.runOnMainThread(() -> {
+                for (Listener listener : listeners) {
+                    listener.onThumbnailReady(updated);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error creating thumbnail for " + media.getId(), e);
+            failed.add(media.getId());
+        } finally {
+            pending.remove(media.getId());
+        }
+    }
+
+    // Adapters diff on the thumbnail path, so listeners get a new object instead of the
+    // instance they may already be showing
+    private static Media copyWithThumbnail(Media media, String thumbnailUri) {
+        Media updated = new Media(media.getNoteId(), media.getType(), media.getUri());
+        updated.setId(media.getId());
+        updated.setTimestamp(media.getTimestamp());
+        updated.setContentHash(media.getContentHash());
+        updated.setThumbnailUri(thumbnailUri);
+        return updated;
+    }
+
+    private File createThumbnailFile() {
+        File storageDir = new File(context.getFilesDir(), "thumbnails");
+        if (!storageDir.exists()) {
+            storageDir.mkdirs();
+        }
+        return new File(storageDir, "THUMB_" + UUID.randomUUID().toString() + ".jpg");
+    }
+
+    // How many AVC streams the hardware decoder can run at once; falls back to one
+    // decoder when the device doesn't report it
+    private static int countHardwareDecoderInstances() {
+        try {
+            MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (MediaCodecInfo info : codecList.getCodecInfos()) {
+                if (info.isEncoder() || !isHardware(info)) {
+                    continue;
+                }
+                for (String type : info.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(MediaFormat.MIMETYPE_VIDEO_AVC)) {
+                        return info.getCapabilitiesForType(type).getMaxSupportedInstances();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying video decoders", e);
+        }
+        return 1;
+    }
+
+    private static boolean isHardware(MediaCodecInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return info.isHardwareAccelerated();
+        }
+        String name = info.getName().toLowerCase(Locale.ROOT);
+        return !name.startsWith("omx.google.") && !name.startsWith("c2.android.");
+    }
+}
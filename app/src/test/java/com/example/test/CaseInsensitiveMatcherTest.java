@@ -0,0 +1,58 @@
+package com.example.test;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks CaseInsensitiveMatcher against toLowerCase().contains() and indexOf(), including
+ * characters outside ASCII that share a skip table bucket with ASCII letters.
+ */
+public class CaseInsensitiveMatcherTest {
+
+    // 'š' (0x161) shares its low byte with 'a', so both land in one skip table bucket
+    private static final String ALPHABET = "aAbBšŠāĀäÄ- ";
+
+    @Test
+    public void matchesLikeToLowerCaseContains() {
+        String[] texts = {"Hello World", "xHELLO", "", "abcabcabd", "Ärger über Straße", "Meeting with Tom"};
+        String[] patterns = {"hello", "WORLD", "abd", "ÄRGER", "über", "tom", "", "o w", "zzz"};
+        for (String text : texts) {
+            for (String pattern : patterns) {
+                boolean expected = text.toLowerCase(Locale.ROOT).contains(pattern.toLowerCase(Locale.ROOT));
+                assertEquals(text + " / " + pattern, expected, new CaseInsensitiveMatcher(pattern).containedIn(text));
+            }
+        }
+    }
+
+    @Test
+    public void wordPrefixMatchesOnlyAtWordStart() {
+        assertTrue(new CaseInsensitiveMatcher("tom").isWordPrefixIn("Meeting with Tom"));
+        assertTrue(new CaseInsensitiveMatcher("rep").isWordPrefixIn("Quarterly-Report"));
+        assertFalse(new CaseInsensitiveMatcher("om").isWordPrefixIn("Meeting with Tom"));
+    }
+
+    @Test
+    public void randomTextsMatchLikeIndexOf() {
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++) {
+            String text = randomString(random, random.nextInt(64));
+            String pattern = randomString(random, random.nextInt(6));
+            int fromIndex = random.nextInt(text.length() + 1);
+            int expected = text.toLowerCase(Locale.ROOT).indexOf(pattern.toLowerCase(Locale.ROOT), fromIndex);
+            assertEquals(text + " / " + pattern + " from " + fromIndex,
+                    expected, new CaseInsensitiveMatcher(pattern).indexIn(text, fromIndex));
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.test;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares how many note rows get rebound after typical list updates when the adapter
+ * calls notifyDataSetChanged (every row) versus dispatching a DiffUtil result keyed on
+ * NoteListItem.getId() (only inserted and changed rows).
+ */
+public class NoteDiffBindBenchmarkTest {
+
+    private static final int NOTE_COUNT = 300;
+
+    private static class BindCounter implements ListUpdateCallback {
+        int binds;
+
+        @Override
+        public void onInserted(int position, int count) {
+            binds += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            // Removed rows are not bound again
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            // Moved rows keep their ViewHolder and are not rebound
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            binds += count;
+        }
+    }
+
+    private static List<NoteListItem> createNotes(int count) {
+        List<NoteListItem> notes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            notes.add(new NoteListItem("note-" + i, 1_700_000_000_000L - i * 1000L, "Note number " + i, 0));
+        }
+        return notes;
+    }
+
+    private static NoteListItem copyOf(NoteListItem note) {
+        return new NoteListItem(note.getId(), note.getTimestamp(), note.getPreview(), note.getMediaCount());
+    }
+
+    private static int diffBinds(List<NoteListItem> oldList, List<NoteListItem> newList) {
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return NoteAdapter.DIFF_CALLBACK.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return NoteAdapter.DIFF_CALLBACK.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+            }
+        });
+        BindCounter counter = new BindCounter();
+        result.dispatchUpdatesTo(counter);
+        return counter.binds;
+    }
+
+    @Test
+    public void reloadWithOneEdit_rebindsOneRow() {
+        List<NoteListItem> oldList = createNotes(NOTE_COUNT);
+        List<NoteListItem> newList = new ArrayList<>();
+        for (NoteListItem note : oldList) {
+            newList.add(copyOf(note));
+        }
+        newList.get(10).setPreview("Edited");
+
+        assertEquals(1, diffBinds(oldList, newList));
+    }
+
+    @Test
+    public void editedNoteMovesToTop_rebindsOneRow() {
+        List<NoteListItem> oldList = createNotes(NOTE_COUNT);
+        List<NoteListItem> newList = new ArrayList<>();
+        for (NoteListItem note : oldList) {
+            newList.add(copyOf(note));
+        }
+        NoteListItem edited = newList.remove(42);
+        edited.setPreview("Edited");
+        edited.setTimestamp(1_800_000_000_000L);
+        newList.add(0, edited);
+
+        assertEquals(1, diffBinds(oldList, newList));
+    }
+
+    @Test
+    public void pageAppendedAndDropped_bindsOnlyNewPage() {
+        List<NoteListItem> all = createNotes(NOTE_COUNT + NotePagingSource.PAGE_SIZE);
+        List<NoteListItem> oldList = new ArrayList<>(all.subList(0, NOTE_COUNT));
+        List<NoteListItem> newList = new ArrayList<>(all.subList(NotePagingSource.PAGE_SIZE, all.size()));
+
+        int before = newList.size();
+        int after = diffBinds(oldList, newList);
+        assertEquals(NotePagingSource.PAGE_SIZE, after);
+        assertTrue(after < before);
+    }
+}